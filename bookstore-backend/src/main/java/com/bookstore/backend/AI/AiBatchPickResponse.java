@@ -0,0 +1,13 @@
+package com.bookstore.backend.AI;
+
+import java.util.List;
+
+// {"results":[{"q":1,"selected":[{"id":..,"reason":..}]}, ...]}
+public class AiBatchPickResponse {
+    public List<Result> results;
+
+    public static class Result {
+        public Integer q;
+        public List<AiPickResponse.Pick> selected;
+    }
+}
@@ -1,13 +1,25 @@
 package com.bookstore.backend.AI;
 
 import com.bookstore.backend.Book.Book;
+import com.bookstore.backend.Book.BookCache;
+import com.bookstore.backend.Book.BookRating;
+import com.bookstore.backend.Book.BookRatingRepository;
 import com.bookstore.backend.Book.BookRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.bookstore.backend.Book.BookSummary;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 @RestController
@@ -17,15 +29,44 @@ public class AiController {
 
     private static final int CANDIDATE_LIMIT = 30;   // how many books you show the model
     private static final int FALLBACK_LIMIT  = 3;    // if model fails show first 3
-    private static final String OLLAMA_MODEL  = "llama3.1";
-    private static final String OLLAMA_URL    = "http://localhost:11434/api/generate";
+    private static final long STREAM_TIMEOUT_MS = 120_000;
+    private static final int RRF_K = 60;             // reciprocal rank fusion damping
+    private static final String CANNED_EXPLANATION = "Here are three books from our catalog that match your request.";
 
     private final BookRepository bookRepository;
-    private final RestTemplate restTemplate = new RestTemplate();
-    private final ObjectMapper objectMapper = new ObjectMapper();
-
-    public AiController(BookRepository bookRepository) {
+    private final BookCache bookCache;
+    private final BookRatingRepository ratingRepository;
+    private final BookTermIndex termIndex;
+    private final BookVectorIndex vectorIndex;
+    private final AiResponseCache responseCache;
+    private final OllamaClient ollama;
+    private final RecommendationBatcher batcher;
+    private final boolean speculativeExplain;
+    private final ExecutorService llmExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public AiController(BookRepository bookRepository,
+                        BookCache bookCache,
+                        BookRatingRepository ratingRepository,
+                        BookTermIndex termIndex,
+                        BookVectorIndex vectorIndex,
+                        AiResponseCache responseCache,
+                        OllamaClient ollama,
+                        RecommendationBatcher batcher,
+                        @Value("${bookstore.ai.speculative-explain:false}") boolean speculativeExplain) {
         this.bookRepository = bookRepository;
+        this.bookCache = bookCache;
+        this.ratingRepository = ratingRepository;
+        this.termIndex = termIndex;
+        this.vectorIndex = vectorIndex;
+        this.responseCache = responseCache;
+        this.ollama = ollama;
+        this.batcher = batcher;
+        this.speculativeExplain = speculativeExplain;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        llmExecutor.shutdownNow();   // interrupts streams and speculative explains still running
     }
 
     @PostMapping("/recommend")
@@ -36,131 +77,193 @@ public class AiController {
             return ResponseEntity.badRequest().body("Query required");
         }
 
-        List<Book> allBooks = bookRepository.findAll();
-        if (allBooks.isEmpty()) {
-            return ResponseEntity.ok(new AiResponse("No books found in catalog.", List.of()));
-        }
+        return ResponseEntity.ok(toResponse(responseCache.getOrCompute(query, () -> computeRecommendation(query))));
+    }
 
-        // 1) Create candidate set (NOT final picks)
-        List<Book> candidates = allBooks.stream()
-                .map(b -> Map.entry(b, score(b, query)))
-                .sorted((a, b) -> Integer.compare(b.getValue(), a.getValue()))
-                .limit(Math.min(CANDIDATE_LIMIT, allBooks.size()))
-                .map(Map.Entry::getKey)
-                .toList();
+    // SSE variant: "candidates" right away, then "token" events as the model writes, then "done".
+    // A cached streamed answer is replayed as one "message" event.
+    @GetMapping(value = "/recommend/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter recommendStream(@RequestParam String query) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
 
-        if (candidates.isEmpty()) {
-            candidates = allBooks.stream().limit(Math.min(CANDIDATE_LIMIT, allBooks.size())).toList();
+        try {
+            if (query == null || query.isBlank()) {
+                emitter.send(SseEmitter.event().name("error").data("Query required"));
+                emitter.complete();
+                return emitter;
+            }
+
+            AiResponseCache.Recommendation cached = responseCache.peekStreamed(query);
+            if (cached != null) {
+                AiResponse response = toResponse(cached);
+                emitter.send(SseEmitter.event().name("candidates").data(response.getBooks()));
+                emitter.send(SseEmitter.event().name("message").data(response.getMessage()));
+                emitter.send(SseEmitter.event().name("done").data(""));
+                emitter.complete();
+                return emitter;
+            }
+
+            List<Book> candidates = findCandidates(query);
+            List<Book> finalBooks = candidates.stream().limit(FALLBACK_LIMIT).toList();
+            List<BookSummary> summaries = summaries(finalBooks);
+            emitter.send(SseEmitter.event().name("candidates").data(summaries));
+
+            if (finalBooks.isEmpty()) {
+                emitter.send(SseEmitter.event().name("message").data("No books found in catalog."));
+                emitter.send(SseEmitter.event().name("done").data(""));
+                emitter.complete();
+                return emitter;
+            }
+
+            if (!ollama.isAvailable()) {
+                emitter.send(SseEmitter.event().name("message").data(CANNED_EXPLANATION));
+                emitter.send(SseEmitter.event().name("done").data(""));
+                emitter.complete();
+                return emitter;
+            }
+
+            llmExecutor.execute(() -> streamExplanation(emitter, query, finalBooks));
+        } catch (IOException e) {
+            emitter.completeWithError(e);   // client went away
         }
+        return emitter;
+    }
 
-        AiPickResponse pick = askOllamaToPick(query, candidates);
+    private void streamExplanation(SseEmitter emitter, String query, List<Book> books) {
+        StringBuilder full = new StringBuilder();
+        try {
+            try {
+                ollama.stream(explainPrompt(query, books), token -> {
+                    full.append(token);
+                    try {
+                        emitter.send(SseEmitter.event().name("token").data(token));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);   // stops reading from Ollama
+                    }
+                });
+                responseCache.putStreamed(query, new AiResponseCache.Recommendation(full.toString(), ids(books)));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (RuntimeException e) {
+                if (full.isEmpty()) {
+                    emitter.send(SseEmitter.event().name("message").data(CANNED_EXPLANATION));
+                }
+            }
+            emitter.send(SseEmitter.event().name("done").data(""));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+    }
 
+    private AiResponseCache.Computed computeRecommendation(String query) {
 
-        Map<Integer, Book> byId = candidates.stream()
-                .collect(Collectors.toMap(Book::getId, b -> b));
+        // 1) Create candidate set (NOT final picks)
+        List<Book> candidates = findCandidates(query);
+        if (candidates.isEmpty()) {
+            return new AiResponseCache.Computed(
+                    new AiResponseCache.Recommendation("No books found in catalog.", List.of()), false);
+        }
 
-        List<AiPickResponse.Pick> safePicks = (pick.selected == null ? List.<AiPickResponse.Pick>of() : pick.selected)
-                .stream()
-                .filter(p -> p != null && p.id != null && byId.containsKey(p.id))
-                .distinct()
-                .limit(FALLBACK_LIMIT)
-                .toList();
+        // Model is known to be down: answer with the lexical top picks instead of waiting on it
+        if (!ollama.isAvailable()) {
+            List<Book> top = candidates.stream().limit(FALLBACK_LIMIT).toList();
+            return new AiResponseCache.Computed(new AiResponseCache.Recommendation(CANNED_EXPLANATION, ids(top)), false);
+        }
 
+        // Speculative mode: explain the lexical top picks while the model is still picking,
+        // so a bad pick costs one round trip instead of two
+        List<Book> fallbackBooks = candidates.stream().limit(FALLBACK_LIMIT).toList();
+        Future<String> speculative = speculativeExplain
+                ? llmExecutor.submit(() -> askOllamaExplain(query, fallbackBooks))
+                : null;
 
         List<Book> finalBooks;
         String explanation;
+        boolean cacheable = true;
 
-        if (safePicks.size() < FALLBACK_LIMIT) {
-            finalBooks = candidates.stream().limit(Math.min(FALLBACK_LIMIT, candidates.size())).toList();
-            explanation = askOllamaExplain(query, finalBooks);
-        } else {
-            finalBooks = safePicks.stream().map(p -> byId.get(p.id)).toList();
-            explanation = buildNumberedExplanation(finalBooks, safePicks);
+        try {
+            AiPickResponse pick = batcher.pick(query, candidates);
+
+            Map<Integer, Book> byId = candidates.stream()
+                    .collect(Collectors.toMap(Book::getId, b -> b));
+
+            List<AiPickResponse.Pick> safePicks = (pick.selected == null ? List.<AiPickResponse.Pick>of() : pick.selected)
+                    .stream()
+                    .filter(p -> p != null && p.id != null && byId.containsKey(p.id))
+                    .distinct()
+                    .limit(FALLBACK_LIMIT)
+                    .toList();
+
+            if (safePicks.size() < FALLBACK_LIMIT) {
+                finalBooks = fallbackBooks;
+                explanation = speculative != null ? await(speculative) : askOllamaExplain(query, finalBooks);
+                if (explanation == null) {
+                    explanation = CANNED_EXPLANATION;
+                    cacheable = false;
+                }
+            } else {
+                finalBooks = safePicks.stream().map(p -> byId.get(p.id)).toList();
+                explanation = buildNumberedExplanation(finalBooks, safePicks);
+            }
+        } finally {
+            if (speculative != null) {
+                speculative.cancel(true);   // picks won: interrupts the in-flight explain call
+            }
         }
 
-        return ResponseEntity.ok(new AiResponse(explanation, finalBooks));
+        return new AiResponseCache.Computed(new AiResponseCache.Recommendation(explanation, ids(finalBooks)), cacheable);
     }
 
-
-    private int score(Book book, String query) {
-        int score = 0;
-        String q = query.toLowerCase();
-
-        for (String word : q.split("\\s+")) {
-            if (word.length() < 4) continue;
-
-            if (contains(book.getTitle(), word)) score += 20;
-            if (contains(book.getDescription(), word)) score += 15;
-            if (contains(book.getAuthor(), word)) score += 5;
-        }
-
-        return score;
+    // Fresh book summaries for cached picks; books deleted since are left out
+    private AiResponse toResponse(AiResponseCache.Recommendation recommendation) {
+        int[] ids = recommendation.bookIds().stream().mapToInt(Integer::intValue).toArray();
+        return new AiResponse(recommendation.message(), summaries(bookCache.findAllById(ids)));
     }
 
-    private boolean contains(String text, String word) {
-        return text != null && text.toLowerCase().contains(word);
+    private static List<Integer> ids(List<Book> books) {
+        return books.stream().map(Book::getId).toList();
     }
 
-    private AiPickResponse askOllamaToPick(String query, List<Book> candidates) {
-
-        String candidateList = candidates.stream()
-                .map(b -> "ID: " + b.getId()
-                        + " | Title: " + b.getTitle()
-                        + " | Author: " + b.getAuthor()
-                        + " | Desc: " + safeTrim(b.getDescription(), 220))
-                .collect(Collectors.joining("\n"));
-
-        String prompt = """
-User request:
-"%s"
-
-Candidates (you MUST choose ONLY from this list):
-%s
-
-Return VALID JSON ONLY in this exact format (NO EXTRA TEXT, NO MARKDOWN):
-{
-  "selected": [
-    {"id": 1, "reason": "why it matches"},
-    {"id": 2, "reason": "why it matches"},
-    {"id": 3, "reason": "why it matches"}
-  ]
-}
-
-Rules:
-- Choose EXACTLY 3
-- Your reason MUST be original and high-level (skills/outcomes/use-case)
-- DO NOT quote the description
-- DO NOT paraphrase sentences from the description
-- DO NOT mention chapter-like details that appear in the description
-- Keep reasons 35 words each
-- Use user-centric language: "You'll learn...", "This helps if you want to..."
-- Each id must be one of the candidate IDs shown above
-- Do not invent books
-""".formatted(query, candidateList);
-
-        Map<String, Object> body = new HashMap<>();
-        body.put("model", OLLAMA_MODEL);
-        body.put("prompt", prompt);
-        body.put("stream", false);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-
-        try {
-            ResponseEntity<Map> res = restTemplate.postForEntity(
-                    OLLAMA_URL,
-                    new HttpEntity<>(body, headers),
-                    Map.class
-            );
 
-            String raw = (res.getBody() == null) ? "" : res.getBody().getOrDefault("response", "").toString().trim();
-            return objectMapper.readValue(raw, AiPickResponse.class);
+    // Rating totals for the picks in one lookup
+    private List<BookSummary> summaries(List<Book> books) {
+        Map<Integer, BookRating> ratings = ratingRepository.findAllById(books.stream().map(Book::getId).toList())
+                .stream()
+                .collect(Collectors.toMap(BookRating::getBookId, r -> r));
+        return books.stream().map(b -> BookSummary.from(b, ratings.get(b.getId()))).toList();
+    }
 
-        } catch (Exception e) {
-            AiPickResponse empty = new AiPickResponse();
-            empty.selected = List.of();
-            return empty;
+    // BM25 and vector hits blended by reciprocal rank fusion, padded from the start
+    // of the catalog so the model always sees a full list
+    private List<Book> findCandidates(String query) {
+        int[] ids = fuse(termIndex.topCandidates(query, CANDIDATE_LIMIT),
+                vectorIndex.topCandidates(query, CANDIDATE_LIMIT));
+        List<Book> candidates = new ArrayList<>(bookCache.findAllById(ids));
+
+        if (candidates.size() < CANDIDATE_LIMIT) {
+            Set<Integer> seen = new HashSet<>();
+            for (Book b : candidates) seen.add(b.getId());
+
+            for (Book b : bookRepository.findAllByOrderByIdAsc(PageRequest.of(0, CANDIDATE_LIMIT))) {
+                if (candidates.size() == CANDIDATE_LIMIT) break;
+                if (seen.add(b.getId())) candidates.add(b);
+            }
         }
+        return candidates;
+    }
+
+    // score(id) = sum over lists of 1 / (RRF_K + rank); ties keep the lexical order
+    private static int[] fuse(int[] lexical, int[] semantic) {
+        Map<Integer, Double> score = new LinkedHashMap<>();
+        for (int i = 0; i < lexical.length; i++) score.merge(lexical[i], 1.0 / (RRF_K + i + 1), Double::sum);
+        for (int i = 0; i < semantic.length; i++) score.merge(semantic[i], 1.0 / (RRF_K + i + 1), Double::sum);
+
+        return score.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed())
+                .limit(CANDIDATE_LIMIT)
+                .mapToInt(Map.Entry::getKey)
+                .toArray();
     }
 
     private String buildNumberedExplanation(List<Book> books, List<AiPickResponse.Pick> picks) {
@@ -182,12 +285,32 @@ Rules:
     }
 
     private String askOllamaExplain(String query, List<Book> books) {
+        try {
+            return ollama.generate(explainPrompt(query, books));
+
+        } catch (Exception e) {
+            return null;   // caller falls back to a canned message
+        }
+    }
+
+    private static String await(Future<String> explanation) {
+        try {
+            return explanation.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private String explainPrompt(String query, List<Book> books) {
 
         String bookList = books.stream()
                 .map(b -> "- " + b.getTitle() + " by " + b.getAuthor())
                 .collect(Collectors.joining("\n"));
 
-        String prompt = """
+        return """
 User request:
 "%s"
 
@@ -202,32 +325,5 @@ STRICT RULES:
 - Write EXACTLY 3 numbered points (1, 2, 3)
 - Each point explains WHY that specific book matches the request
 """.formatted(query, bookList);
-
-        Map<String, Object> body = new HashMap<>();
-        body.put("model", OLLAMA_MODEL);
-        body.put("prompt", prompt);
-        body.put("stream", false);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-
-        try {
-            ResponseEntity<Map> res = restTemplate.postForEntity(
-                    OLLAMA_URL,
-                    new HttpEntity<>(body, headers),
-                    Map.class
-            );
-
-            return res.getBody() == null ? "" : res.getBody().getOrDefault("response", "").toString();
-
-        } catch (Exception e) {
-            return "Here are three books from our catalog that match your request.";
-        }
-    }
-
-    private String safeTrim(String s, int max) {
-        if (s == null) return "";
-        s = s.replace("\n", " ").replace("\r", " ").trim();
-        return s.length() <= max ? s : s.substring(0, max) + "...";
     }
 }
@@ -1,14 +1,14 @@
 package com.bookstore.backend.AI;
 
-import com.bookstore.backend.Book.Book;
+import com.bookstore.backend.Book.BookSummary;
 import java.util.List;
 
 public class AiResponse {
 
     private String message;
-    private List<Book> books;
+    private List<BookSummary> books;
 
-    public AiResponse(String message, List<Book> books) {
+    public AiResponse(String message, List<BookSummary> books) {
         this.message = message;
         this.books = books;
     }
@@ -17,7 +17,7 @@ public class AiResponse {
         return message;
     }
 
-    public List<Book> getBooks() {
+    public List<BookSummary> getBooks() {
         return books;
     }
 }
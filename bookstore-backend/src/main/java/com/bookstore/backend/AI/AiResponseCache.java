@@ -0,0 +1,98 @@
+package com.bookstore.backend.AI;
+
+import com.bookstore.backend.Book.BookTokenizer;
+import com.bookstore.backend.Book.CatalogVersion;
+import com.bookstore.backend.Cache.TtlLruCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Caches final recommendations by normalized query and catalog text version,
+ * and coalesces concurrent identical queries onto one in-flight computation
+ * so a burst of "learn kubernetes" costs one round of LLM calls.
+ *
+ * Only the explanation and the picked ids are kept: stock, price and ratings
+ * change without moving the text version, so callers build the book
+ * summaries fresh on every hit.
+ *
+ * The streaming endpoint keeps its answers apart (peekStreamed/putStreamed):
+ * a streamed explanation covers the lexical top picks, not the model's, and
+ * must not become what /recommend returns.
+ */
+@Component
+public class AiResponseCache {
+
+    public record Recommendation(String message, List<Integer> bookIds) {}
+
+    // cacheable=false for degraded answers (model down) so they aren't served for a whole TTL
+    public record Computed(Recommendation recommendation, boolean cacheable) {}
+
+    private static final String PICKED = "pick|";
+    private static final String STREAMED = "stream|";
+
+    private final CatalogVersion catalogVersion;
+    private final TtlLruCache<String, Recommendation> responses;
+    private final Map<String, CompletableFuture<Recommendation>> inFlight = new ConcurrentHashMap<>();
+
+    public AiResponseCache(CatalogVersion catalogVersion,
+                           MeterRegistry meterRegistry,
+                           @Value("${bookstore.ai.cache.max-size:1000}") int maxSize,
+                           @Value("${bookstore.ai.cache.ttl:30m}") Duration ttl) {
+        this.catalogVersion = catalogVersion;
+        this.responses = new TtlLruCache<String, Recommendation>(maxSize, ttl).bindTo(meterRegistry, "ai-responses");
+    }
+
+    public Recommendation peekStreamed(String query) {
+        return responses.get(key(STREAMED, query));
+    }
+
+    public void putStreamed(String query, Recommendation recommendation) {
+        responses.put(key(STREAMED, query), recommendation);
+    }
+
+    public Recommendation getOrCompute(String query, Supplier<Computed> compute) {
+        String key = key(PICKED, query);
+
+        Recommendation cached = responses.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<Recommendation> mine = new CompletableFuture<>();
+        CompletableFuture<Recommendation> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            try {
+                return leader.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+
+        try {
+            Computed computed = compute.get();
+            if (computed.cacheable()) {
+                responses.put(key, computed.recommendation());
+            }
+            mine.complete(computed.recommendation());
+            return computed.recommendation();
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private String key(String namespace, String query) {
+        return namespace + catalogVersion.textVersion() + "|" + String.join(" ", BookTokenizer.tokenize(query));
+    }
+}
@@ -0,0 +1,378 @@
+package com.bookstore.backend.AI;
+
+import com.bookstore.backend.Book.BookChangedEvent;
+import com.bookstore.backend.Book.BookRepository;
+import com.bookstore.backend.Book.BookTextEntry;
+import com.bookstore.backend.Book.BookTokenizer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Pre-tokenized BM25 index over title, author and description, used to pick
+ * the candidates shown to the model. Each book gets a dense slot; postings
+ * store slots with a field-weighted term frequency. Updates retire the old
+ * slot and append a new one, and the index compacts itself in place once
+ * too many retired slots pile up. Each slot remembers its postings, so a
+ * retired book stops counting towards a term's document frequency at once.
+ *
+ * Scoring borrows pooled scratch arrays (one per concurrent query, not per
+ * thread), so a query allocates little beyond its token list and result.
+ */
+@Component
+public class BookTermIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    // Field weights mirror the old score(): title > description > author
+    private static final float TITLE_WEIGHT = 2.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.5f;
+    private static final float AUTHOR_WEIGHT = 0.5f;
+
+    private static final int MIN_TOKEN_LENGTH = 3;
+    private static final Set<String> STOPWORDS = Set.of(
+            "the", "and", "for", "with", "about", "that", "this", "you", "your", "from", "into", "how", "what",
+            "want", "need", "book", "books", "some", "something");
+
+    private static final int LOAD_BATCH_SIZE = 5_000;
+
+    private final BookRepository bookRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Queue<Scratch> scratchPool = new ConcurrentLinkedQueue<>();
+
+    private Map<String, Postings> terms = new HashMap<>();
+    private Map<Integer, Integer> slotByBook = new HashMap<>();
+    private int[] bookBySlot = new int[1024];    // 0 = retired slot
+    private float[] lengthBySlot = new float[1024];
+    private Postings[][] postingsBySlot = new Postings[1024][];
+    private int slots;
+    private int liveDocs;
+    private double totalLength;
+
+    public BookTermIndex(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            terms = new HashMap<>();
+            slotByBook = new HashMap<>();
+            bookBySlot = new int[1024];
+            lengthBySlot = new float[1024];
+            postingsBySlot = new Postings[1024][];
+            slots = 0;
+            liveDocs = 0;
+            totalLength = 0;
+
+            int afterId = 0;
+            List<BookTextEntry> batch;
+            do {
+                batch = bookRepository.findTextEntries(afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+                for (BookTextEntry e : batch) {
+                    add(e.id(), e.title(), e.author(), e.description());
+                }
+                if (!batch.isEmpty()) {
+                    afterId = batch.get(batch.size() - 1).id();
+                }
+            } while (batch.size() == LOAD_BATCH_SIZE);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (!event.removed() && event.book() == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            retire(event.bookId());
+            if (!event.removed()) {
+                add(event.bookId(), event.book().getTitle(), event.book().getAuthor(), event.book().getDescription());
+            }
+            if (slots > 1024 && liveDocs < slots / 2) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Best-first book ids, at most limit of them; only books sharing a term with the query
+    public int[] topCandidates(String query, int limit) {
+        List<String> queryTerms = queryTerms(query);
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return new int[0];
+        }
+
+        lock.readLock().lock();
+        try {
+            if (liveDocs == 0) {
+                return new int[0];
+            }
+
+            Scratch s = scratchPool.poll();
+            if (s == null) {
+                s = new Scratch();
+            }
+            try {
+                s.ensure(slots, limit);
+                return score(s, queryTerms, limit);
+            } finally {
+                scratchPool.offer(s);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int[] score(Scratch s, List<String> queryTerms, int limit) {
+        float avgLength = (float) (totalLength / liveDocs);
+        int touchedCount = 0;
+
+        for (String term : queryTerms) {
+            Postings p = terms.get(term);
+            if (p == null) continue;
+
+            float idf = (float) Math.log(1 + (liveDocs - p.live + 0.5) / (p.live + 0.5));
+            for (int i = 0; i < p.size; i++) {
+                int slot = p.slots[i];
+                if (bookBySlot[slot] == 0) continue;
+
+                float tf = p.tf[i];
+                float norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * lengthBySlot[slot] / avgLength));
+                if (s.scores[slot] == 0f) {
+                    s.touched[touchedCount++] = slot;
+                }
+                s.scores[slot] += idf * norm;
+            }
+        }
+
+        // Bounded min-heap of the best `limit` slots
+        int heapSize = 0;
+        for (int t = 0; t < touchedCount; t++) {
+            int slot = s.touched[t];
+            float score = s.scores[slot];
+            s.scores[slot] = 0f;   // reset scratch as we go
+
+            if (heapSize < limit) {
+                s.heapSlots[heapSize] = slot;
+                s.heapScores[heapSize] = score;
+                siftUp(s, heapSize++);
+            } else if (better(score, slot, s.heapScores[0], s.heapSlots[0])) {
+                s.heapSlots[0] = slot;
+                s.heapScores[0] = score;
+                siftDown(s, 0, heapSize);
+            }
+        }
+
+        int[] ids = new int[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            ids[i] = bookBySlot[s.heapSlots[0]];
+            s.heapSlots[0] = s.heapSlots[i];
+            s.heapScores[0] = s.heapScores[i];
+            siftDown(s, 0, i);
+        }
+        return ids;
+    }
+
+    static List<String> queryTerms(String text) {
+        List<String> out = new ArrayList<>();
+        for (String token : BookTokenizer.tokenize(text)) {
+            if (isTerm(token) && !out.contains(token)) {
+                out.add(token);
+            }
+        }
+        return out;
+    }
+
+    static boolean isTerm(String token) {
+        return token.length() >= MIN_TOKEN_LENGTH && !STOPWORDS.contains(token);
+    }
+
+    // Higher score wins; ties go to the lower slot (older book), like the old stable sort
+    private static boolean better(float score, int slot, float otherScore, int otherSlot) {
+        return score > otherScore || (score == otherScore && slot < otherSlot);
+    }
+
+    private static void siftUp(Scratch s, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(s.heapScores[parent], s.heapSlots[parent], s.heapScores[i], s.heapSlots[i])) break;
+            swap(s, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(Scratch s, int i, int size) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) return;
+            int worst = left;
+            int right = left + 1;
+            if (right < size && better(s.heapScores[worst], s.heapSlots[worst], s.heapScores[right], s.heapSlots[right])) {
+                worst = right;
+            }
+            if (!better(s.heapScores[i], s.heapSlots[i], s.heapScores[worst], s.heapSlots[worst])) return;
+            swap(s, i, worst);
+            i = worst;
+        }
+    }
+
+    private static void swap(Scratch s, int a, int b) {
+        int slot = s.heapSlots[a];
+        s.heapSlots[a] = s.heapSlots[b];
+        s.heapSlots[b] = slot;
+        float score = s.heapScores[a];
+        s.heapScores[a] = s.heapScores[b];
+        s.heapScores[b] = score;
+    }
+
+    // Callers hold the write lock
+    private void add(int bookId, String title, String author, String description) {
+        Map<String, Float> tf = new HashMap<>();
+        float length = 0;
+        length += count(tf, title, TITLE_WEIGHT);
+        length += count(tf, author, AUTHOR_WEIGHT);
+        length += count(tf, description, DESCRIPTION_WEIGHT);
+
+        if (slots == bookBySlot.length) {
+            bookBySlot = Arrays.copyOf(bookBySlot, slots * 2);
+            lengthBySlot = Arrays.copyOf(lengthBySlot, slots * 2);
+            postingsBySlot = Arrays.copyOf(postingsBySlot, slots * 2);
+        }
+        int slot = slots++;
+        bookBySlot[slot] = bookId;
+        lengthBySlot[slot] = length;
+        slotByBook.put(bookId, slot);
+        liveDocs++;
+        totalLength += length;
+
+        Postings[] bookPostings = new Postings[tf.size()];
+        int i = 0;
+        for (Map.Entry<String, Float> e : tf.entrySet()) {
+            Postings p = terms.computeIfAbsent(e.getKey(), k -> new Postings());
+            p.add(slot, e.getValue());
+            bookPostings[i++] = p;
+        }
+        postingsBySlot[slot] = bookPostings;
+    }
+
+    private void retire(int bookId) {
+        Integer slot = slotByBook.remove(bookId);
+        if (slot == null) return;
+        bookBySlot[slot] = 0;
+        for (Postings p : postingsBySlot[slot]) {
+            p.live--;
+        }
+        postingsBySlot[slot] = null;
+        liveDocs--;
+        totalLength -= lengthBySlot[slot];
+    }
+
+    // Renumber the live slots in order and drop postings of retired ones; one pass over
+    // memory, no trip back to the database. Postings stay sorted since slots keep their order.
+    private void compact() {
+        int[] renumbered = new int[slots];
+        int next = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            int bookId = bookBySlot[slot];
+            if (bookId == 0) {
+                renumbered[slot] = -1;
+                continue;
+            }
+            renumbered[slot] = next;
+            bookBySlot[next] = bookId;
+            lengthBySlot[next] = lengthBySlot[slot];
+            postingsBySlot[next] = postingsBySlot[slot];
+            slotByBook.put(bookId, next);
+            next++;
+        }
+        Arrays.fill(bookBySlot, next, slots, 0);
+        Arrays.fill(postingsBySlot, next, slots, null);
+        slots = next;
+
+        Iterator<Postings> it = terms.values().iterator();
+        while (it.hasNext()) {
+            Postings p = it.next();
+            int kept = 0;
+            for (int i = 0; i < p.size; i++) {
+                int slot = renumbered[p.slots[i]];
+                if (slot < 0) continue;
+                p.slots[kept] = slot;
+                p.tf[kept] = p.tf[i];
+                kept++;
+            }
+            p.size = kept;
+            if (kept == 0) {
+                it.remove();
+            }
+        }
+    }
+
+    private static float count(Map<String, Float> tf, String text, float weight) {
+        float length = 0;
+        for (String token : BookTokenizer.tokenize(text)) {
+            tf.merge(token, weight, Float::sum);
+            length += weight;
+        }
+        return length;
+    }
+
+    private static final class Postings {
+        int[] slots = new int[4];
+        float[] tf = new float[4];
+        int size;
+        int live;   // postings of live slots: the term's document frequency
+
+        void add(int slot, float weight) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                tf = Arrays.copyOf(tf, size * 2);
+            }
+            slots[size] = slot;
+            tf[size] = weight;
+            size++;
+            live++;
+        }
+    }
+
+    // Query accumulators; scores is always all-zero between queries
+    private static final class Scratch {
+        float[] scores = new float[0];
+        int[] touched = new int[0];
+        int[] heapSlots = new int[0];
+        float[] heapScores = new float[0];
+
+        void ensure(int slots, int limit) {
+            if (scores.length < slots) {
+                scores = new float[slots];
+                touched = new int[slots];
+            }
+            if (heapSlots.length < limit) {
+                heapSlots = new int[limit];
+                heapScores = new float[limit];
+            }
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.bookstore.backend.AI;
+
+import com.bookstore.backend.Book.BookChangedEvent;
+import com.bookstore.backend.Book.BookRepository;
+import com.bookstore.backend.Book.BookTextEntry;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory embedding index for semantic candidate retrieval. All vectors
+ * live row-major in one float[] (slot * dims), so a scan is a straight walk
+ * over contiguous memory. Vectors are unit length, so cosine is a dot product.
+ *
+ * Large catalogs are scanned in parallel chunks, each keeping its own
+ * bounded top-k, merged at the end. Updates retire the old slot and append
+ * a new row; retired rows are compacted away in place.
+ */
+@Component
+public class BookVectorIndex {
+
+    private static final float TITLE_WEIGHT = 2.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.5f;
+    private static final float AUTHOR_WEIGHT = 0.5f;
+
+    // Below this the hashed vectors are mostly sharing noise, not meaning
+    private static final float MIN_SIMILARITY = 0.15f;
+
+    private static final int CHUNK_ROWS = 16_384;
+    private static final int LOAD_BATCH_SIZE = 5_000;
+
+    private final BookRepository bookRepository;
+    private final Embedder embedder;
+    private final int dims;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private float[] vectors;
+    private int[] bookBySlot;    // 0 = retired slot
+    private Map<Integer, Integer> slotByBook = new HashMap<>();
+    private int slots;
+    private int liveDocs;
+
+    public BookVectorIndex(BookRepository bookRepository, Embedder embedder) {
+        this.bookRepository = bookRepository;
+        this.embedder = embedder;
+        this.dims = embedder.dimensions();
+        this.vectors = new float[1024 * dims];
+        this.bookBySlot = new int[1024];
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            vectors = new float[1024 * dims];
+            bookBySlot = new int[1024];
+            slotByBook = new HashMap<>();
+            slots = 0;
+            liveDocs = 0;
+
+            int afterId = 0;
+            List<BookTextEntry> batch;
+            do {
+                batch = bookRepository.findTextEntries(afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+                for (BookTextEntry e : batch) {
+                    add(e.id(), embedBook(e.title(), e.author(), e.description()));
+                }
+                if (!batch.isEmpty()) {
+                    afterId = batch.get(batch.size() - 1).id();
+                }
+            } while (batch.size() == LOAD_BATCH_SIZE);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (!event.removed() && event.book() == null) {
+            return;
+        }
+
+        // Embed outside the lock; readers only wait for the row copy
+        float[] vector = event.removed() ? null
+                : embedBook(event.book().getTitle(), event.book().getAuthor(), event.book().getDescription());
+
+        lock.writeLock().lock();
+        try {
+            retire(event.bookId());
+            if (vector != null) {
+                add(event.bookId(), vector);
+            }
+            if (slots > 1024 && liveDocs < slots / 2) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Most similar book ids first, at most limit of them
+    public int[] topCandidates(String query, int limit) {
+        float[] q = embedder.embed(query);
+        if (limit <= 0 || isZero(q)) {
+            return new int[0];
+        }
+
+        lock.readLock().lock();
+        try {
+            if (liveDocs == 0) {
+                return new int[0];
+            }
+
+            TopK best;
+            if (slots <= CHUNK_ROWS) {
+                best = scan(q, 0, slots, limit);
+            } else {
+                int chunks = (slots + CHUNK_ROWS - 1) / CHUNK_ROWS;
+                best = IntStream.range(0, chunks)
+                        .parallel()
+                        .mapToObj(c -> scan(q, c * CHUNK_ROWS, Math.min(slots, (c + 1) * CHUNK_ROWS), limit))
+                        .reduce(TopK::merge)
+                        .orElseThrow();
+            }
+
+            int[] ranked = best.slotsDescending();
+            for (int i = 0; i < ranked.length; i++) {
+                ranked[i] = bookBySlot[ranked[i]];
+            }
+            return ranked;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private TopK scan(float[] q, int from, int to, int limit) {
+        TopK top = new TopK(limit);
+        float[] m = vectors;
+        int d = dims;
+        for (int slot = from; slot < to; slot++) {
+            if (bookBySlot[slot] == 0) continue;
+            float score = dot(m, slot * d, q, d);
+            if (score >= MIN_SIMILARITY) {
+                top.offer(score, slot);
+            }
+        }
+        return top;
+    }
+
+    // Four independent accumulators break the add dependency chain so the JIT
+    // can keep several multiply-adds in flight (and unroll/vectorize the loads)
+    private static float dot(float[] m, int base, float[] q, int dims) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < dims; i += 4) {
+            s0 += m[base + i] * q[i];
+            s1 += m[base + i + 1] * q[i + 1];
+            s2 += m[base + i + 2] * q[i + 2];
+            s3 += m[base + i + 3] * q[i + 3];
+        }
+        for (; i < dims; i++) {
+            s0 += m[base + i] * q[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private float[] embedBook(String title, String author, String description) {
+        float[] v = new float[dims];
+        accumulate(v, embedder.embed(title), TITLE_WEIGHT);
+        accumulate(v, embedder.embed(author), AUTHOR_WEIGHT);
+        accumulate(v, embedder.embed(description), DESCRIPTION_WEIGHT);
+        HashingEmbedder.normalize(v);
+        return v;
+    }
+
+    private static void accumulate(float[] into, float[] v, float weight) {
+        for (int i = 0; i < into.length; i++) into[i] += v[i] * weight;
+    }
+
+    private static boolean isZero(float[] v) {
+        for (float x : v) if (x != 0f) return false;
+        return true;
+    }
+
+    // Callers hold the write lock
+    private void add(int bookId, float[] vector) {
+        if (slots == bookBySlot.length) {
+            bookBySlot = Arrays.copyOf(bookBySlot, slots * 2);
+            vectors = Arrays.copyOf(vectors, slots * 2 * dims);
+        }
+        int slot = slots++;
+        System.arraycopy(vector, 0, vectors, slot * dims, dims);
+        bookBySlot[slot] = bookId;
+        slotByBook.put(bookId, slot);
+        liveDocs++;
+    }
+
+    private void retire(int bookId) {
+        Integer slot = slotByBook.remove(bookId);
+        if (slot == null) return;
+        bookBySlot[slot] = 0;
+        liveDocs--;
+    }
+
+    // Slide live rows down over retired ones; vectors are kept, nothing is re-embedded
+    private void compact() {
+        int next = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            int bookId = bookBySlot[slot];
+            if (bookId == 0) continue;
+            if (slot != next) {
+                System.arraycopy(vectors, slot * dims, vectors, next * dims, dims);
+                bookBySlot[next] = bookId;
+                slotByBook.put(bookId, next);
+            }
+            next++;
+        }
+        Arrays.fill(bookBySlot, next, slots, 0);
+        slots = next;
+    }
+
+    // Bounded min-heap on score; ties keep the lower slot (older book)
+    private static final class TopK {
+        final int[] heapSlots;
+        final float[] heapScores;
+        int size;
+
+        TopK(int limit) {
+            heapSlots = new int[limit];
+            heapScores = new float[limit];
+        }
+
+        void offer(float score, int slot) {
+            if (size < heapSlots.length) {
+                heapSlots[size] = slot;
+                heapScores[size] = score;
+                siftUp(size++);
+            } else if (better(score, slot, heapScores[0], heapSlots[0])) {
+                heapSlots[0] = slot;
+                heapScores[0] = score;
+                siftDown(0, size);
+            }
+        }
+
+        TopK merge(TopK other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.heapScores[i], other.heapSlots[i]);
+            }
+            return this;
+        }
+
+        // Empties the heap
+        int[] slotsDescending() {
+            int[] out = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                out[i] = heapSlots[0];
+                heapSlots[0] = heapSlots[i];
+                heapScores[0] = heapScores[i];
+                siftDown(0, i);
+            }
+            size = 0;
+            return out;
+        }
+
+        private static boolean better(float score, int slot, float otherScore, int otherSlot) {
+            return score > otherScore || (score == otherScore && slot < otherSlot);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!better(heapScores[parent], heapSlots[parent], heapScores[i], heapSlots[i])) break;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i, int n) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= n) return;
+                int worst = left;
+                int right = left + 1;
+                if (right < n && better(heapScores[worst], heapSlots[worst], heapScores[right], heapSlots[right])) {
+                    worst = right;
+                }
+                if (!better(heapScores[i], heapSlots[i], heapScores[worst], heapSlots[worst])) return;
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int slot = heapSlots[a];
+            heapSlots[a] = heapSlots[b];
+            heapSlots[b] = slot;
+            float score = heapScores[a];
+            heapScores[a] = heapScores[b];
+            heapScores[b] = score;
+        }
+    }
+}
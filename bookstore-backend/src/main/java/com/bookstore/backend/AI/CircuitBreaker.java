@@ -0,0 +1,76 @@
+package com.bookstore.backend.AI;
+
+import java.time.Duration;
+
+/**
+ * Consecutive-failure circuit breaker. CLOSED lets everything through;
+ * failureThreshold failures in a row open it for openDuration, after which
+ * a single trial call is let through (HALF_OPEN) to decide whether to close
+ * again or stay open for another round.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    // Would a call be let through right now? Does not take the half-open trial slot.
+    public synchronized boolean isCallPermitted() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> System.nanoTime() - openedAt >= openNanos;
+            case HALF_OPEN -> !trialInFlight;
+        };
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (trialInFlight) yield false;
+                trialInFlight = true;
+                yield true;
+            }
+        };
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    public synchronized void onFailure() {
+        trialInFlight = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    // Permission was taken but the call never reached the model (e.g. caller went away)
+    public synchronized void onIgnored() {
+        trialInFlight = false;
+    }
+}
@@ -0,0 +1,13 @@
+package com.bookstore.backend.AI;
+
+/**
+ * Turns text into a fixed-size vector for BookVectorIndex. Swap in a real
+ * model by registering another Embedder bean as @Primary.
+ */
+public interface Embedder {
+
+    int dimensions();
+
+    // Unit length, or all zeros when the text has nothing to embed
+    float[] embed(String text);
+}
@@ -0,0 +1,76 @@
+package com.bookstore.backend.AI;
+
+import com.bookstore.backend.Book.BookTokenizer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Offline default embedder: signed feature hashing of words and their
+ * character trigrams. Trigrams let "scale" land near "scalability" and
+ * "engineer" near "engineering" without any model or vocabulary.
+ * Deterministic across runs (String.hashCode is specified).
+ */
+@Component
+public class HashingEmbedder implements Embedder {
+
+    private static final float WORD_WEIGHT = 1.0f;
+    private static final float TRIGRAM_WEIGHT = 0.6f;
+
+    private final int dims;
+
+    public HashingEmbedder(@Value("${bookstore.ai.vector.dims:128}") int dims) {
+        if (dims <= 0) {
+            throw new IllegalArgumentException("bookstore.ai.vector.dims must be positive");
+        }
+        this.dims = dims;
+    }
+
+    @Override
+    public int dimensions() {
+        return dims;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] v = new float[dims];
+        for (String token : BookTokenizer.tokenize(text)) {
+            if (!BookTermIndex.isTerm(token)) continue;
+
+            add(v, token.hashCode(), WORD_WEIGHT);
+
+            // "^scale$" -> ^sc, sca, cal, ale, le$; spread the weight so long words don't dominate
+            String padded = "^" + token + "$";
+            int grams = padded.length() - 2;
+            float w = TRIGRAM_WEIGHT / (float) Math.sqrt(grams);
+            for (int i = 0; i < grams; i++) {
+                add(v, padded.substring(i, i + 3).hashCode() * 31 + 7, w);
+            }
+        }
+        normalize(v);
+        return v;
+    }
+
+    private void add(float[] v, int hash, float weight) {
+        int h = mix(hash);
+        int bucket = (h >>> 1) % dims;
+        v[bucket] += (h & 1) == 0 ? weight : -weight;
+    }
+
+    // murmur3 finalizer, so nearby hashCodes land in unrelated buckets
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    static void normalize(float[] v) {
+        double sum = 0;
+        for (float x : v) sum += x * x;
+        if (sum == 0) return;
+        float inv = (float) (1 / Math.sqrt(sum));
+        for (int i = 0; i < v.length; i++) v[i] *= inv;
+    }
+}
@@ -0,0 +1,10 @@
+package com.bookstore.backend.AI;
+
+// Thrown without calling the model: circuit open or too many calls in flight
+public class LlmUnavailableException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public LlmUnavailableException(String message) {
+        super(message);
+    }
+}
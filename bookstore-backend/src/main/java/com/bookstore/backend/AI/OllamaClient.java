@@ -0,0 +1,186 @@
+package com.bookstore.backend.AI;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Client for Ollama's /api/generate with its own timeouts, a concurrency
+ * bulkhead and a circuit breaker, so a slow model can't tie up the Tomcat
+ * workers that serve browsing and checkout. Errors are thrown; callers
+ * decide the fallback.
+ */
+@Component
+public class OllamaClient {
+
+    private final String url;
+    private final String model;
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Semaphore bulkhead;
+    private final int maxConcurrent;
+    private final Duration bulkheadWait;
+    private final CircuitBreaker breaker;
+
+    private final Counter rejectedOpen;
+    private final Counter rejectedFull;
+
+    public OllamaClient(@Value("${bookstore.ollama.url:http://localhost:11434/api/generate}") String url,
+                        @Value("${bookstore.ollama.model:llama3.1}") String model,
+                        @Value("${bookstore.ollama.connect-timeout:2s}") Duration connectTimeout,
+                        @Value("${bookstore.ollama.read-timeout:60s}") Duration readTimeout,
+                        @Value("${bookstore.ollama.max-concurrent:8}") int maxConcurrent,
+                        @Value("${bookstore.ollama.bulkhead-wait:250ms}") Duration bulkheadWait,
+                        @Value("${bookstore.ollama.breaker.failure-threshold:5}") int failureThreshold,
+                        @Value("${bookstore.ollama.breaker.open-duration:30s}") Duration openDuration,
+                        MeterRegistry meterRegistry) {
+        this.url = url;
+        this.model = model;
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(
+                HttpClient.newBuilder().connectTimeout(connectTimeout).build());
+        requestFactory.setReadTimeout(readTimeout);
+        this.restTemplate = new RestTemplate(requestFactory);
+
+        this.maxConcurrent = maxConcurrent;
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.bulkheadWait = bulkheadWait;
+        this.breaker = new CircuitBreaker(failureThreshold, openDuration);
+
+        this.rejectedOpen = Counter.builder("bookstore.llm.rejected").tag("reason", "circuit_open").register(meterRegistry);
+        this.rejectedFull = Counter.builder("bookstore.llm.rejected").tag("reason", "bulkhead_full").register(meterRegistry);
+        for (CircuitBreaker.State s : CircuitBreaker.State.values()) {
+            Gauge.builder("bookstore.llm.circuit.state", breaker, b -> b.state() == s ? 1 : 0)
+                    .tag("state", s.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        Gauge.builder("bookstore.llm.in_flight", bulkhead, b -> this.maxConcurrent - b.availablePermits())
+                .register(meterRegistry);
+    }
+
+    // False while the breaker is open: skip the model and go straight to the lexical fallback
+    public boolean isAvailable() {
+        return breaker.isCallPermitted();
+    }
+
+    public String generate(String prompt) {
+        return guarded(() -> {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+
+            ResponseEntity<JsonNode> res = restTemplate.postForEntity(
+                    url,
+                    new HttpEntity<>(body(prompt, false), headers),
+                    JsonNode.class
+            );
+
+            return res.getBody() == null ? "" : res.getBody().path("response").asText("");
+        });
+    }
+
+    // Ollama streams one JSON object per line: {"response":"tok","done":false}
+    public void stream(String prompt, Consumer<String> onToken) {
+        guarded(() -> restTemplate.execute(url, HttpMethod.POST,
+                req -> {
+                    req.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                    req.getBody().write(objectMapper.writeValueAsBytes(body(prompt, true)));
+                },
+                res -> {
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(res.getBody(), StandardCharsets.UTF_8));
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isBlank()) continue;
+                        JsonNode chunk = objectMapper.readTree(line);
+                        String token = chunk.path("response").asText("");
+                        if (!token.isEmpty()) {
+                            try {
+                                onToken.accept(token);
+                            } catch (RuntimeException e) {
+                                throw new ConsumerFailure(e);
+                            }
+                        }
+                        if (chunk.path("done").asBoolean(false)) break;
+                    }
+                    return null;
+                }));
+    }
+
+    private <T> T guarded(Supplier<T> call) {
+        // Breaker first: an open circuit fails at once instead of queueing for a permit
+        if (!breaker.tryAcquire()) {
+            rejectedOpen.increment();
+            throw new LlmUnavailableException("Model circuit is open");
+        }
+
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(bulkheadWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            breaker.onIgnored();
+            Thread.currentThread().interrupt();
+            throw new LlmUnavailableException("Interrupted waiting for the model");
+        }
+        if (!acquired) {
+            breaker.onIgnored();   // hands back a half-open trial we never used
+            rejectedFull.increment();
+            throw new LlmUnavailableException("Too many model calls in flight");
+        }
+
+        try {
+            T result = call.get();
+            breaker.onSuccess();
+            return result;
+        } catch (ConsumerFailure e) {
+            breaker.onIgnored();   // our reader gave up (client left), not the model's fault
+            throw e.failure;
+        } catch (RuntimeException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                breaker.onIgnored();   // cancelled by us
+            } else {
+                breaker.onFailure();
+            }
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private Map<String, Object> body(String prompt, boolean stream) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("model", model);
+        body.put("prompt", prompt);
+        body.put("stream", stream);
+        return body;
+    }
+
+    private static final class ConsumerFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final RuntimeException failure;
+
+        ConsumerFailure(RuntimeException failure) {
+            super(failure);
+            this.failure = failure;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.bookstore.backend.AI;
+
+import com.bookstore.backend.Book.Book;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Asks the model to pick books for a query. With a batch window configured,
+ * picks that arrive within the window (up to max-size of them) share one
+ * multi-query prompt and one HTTP call; each caller gets its own slice of
+ * the structured answer. A window of 0 calls the model directly.
+ */
+@Component
+public class RecommendationBatcher {
+
+    private static final int DESCRIPTION_CHARS = 220;
+
+    private static final String RULES = """
+- Choose EXACTLY 3
+- Your reason MUST be original and high-level (skills/outcomes/use-case)
+- DO NOT quote the description
+- DO NOT paraphrase sentences from the description
+- DO NOT mention chapter-like details that appear in the description
+- Keep reasons 35 words each
+- Use user-centric language: "You'll learn...", "This helps if you want to..."
+- Each id must be one of the candidate IDs shown above
+- Do not invent books
+""";
+
+    private final OllamaClient ollama;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final long windowNanos;
+    private final int maxBatchSize;
+
+    private final BlockingQueue<PendingPick> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService llmExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Thread dispatcher;
+
+    private record PendingPick(String query, List<Book> candidates, CompletableFuture<AiPickResponse> result) {}
+
+    public RecommendationBatcher(OllamaClient ollama,
+                                 @Value("${bookstore.ai.batch.window:0ms}") Duration window,
+                                 @Value("${bookstore.ai.batch.max-size:4}") int maxBatchSize) {
+        this.ollama = ollama;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+
+        if (isBatching()) {
+            dispatcher = Thread.ofPlatform().daemon().name("ai-pick-batcher").start(this::dispatchLoop);
+        } else {
+            dispatcher = null;
+        }
+    }
+
+    // Never throws: a failed or unparseable answer comes back with no picks
+    public AiPickResponse pick(String query, List<Book> candidates) {
+        if (!isBatching()) {
+            return pickOne(query, candidates);
+        }
+
+        PendingPick pending = new PendingPick(query, candidates, new CompletableFuture<>());
+        queue.add(pending);
+        try {
+            return pending.result().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return empty();
+        } catch (ExecutionException e) {
+            return empty();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        llmExecutor.shutdownNow();
+        for (PendingPick p; (p = queue.poll()) != null; ) {
+            p.result().complete(empty());
+        }
+    }
+
+    private boolean isBatching() {
+        return windowNanos > 0 && maxBatchSize > 1;
+    }
+
+    // First arrival opens the window; the batch goes out when it closes or fills
+    private void dispatchLoop() {
+        while (true) {
+            List<PendingPick> batch = new ArrayList<>(maxBatchSize);
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) break;
+                    PendingPick next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                batch.forEach(p -> p.result().complete(empty()));
+                return;
+            }
+
+            try {
+                llmExecutor.execute(() -> send(batch));
+            } catch (RejectedExecutionException e) {
+                batch.forEach(p -> p.result().complete(empty()));
+                return;
+            }
+        }
+    }
+
+    private void send(List<PendingPick> batch) {
+        if (batch.size() == 1) {
+            PendingPick p = batch.get(0);
+            p.result().complete(pickOne(p.query(), p.candidates()));
+            return;
+        }
+
+        Map<Integer, List<AiPickResponse.Pick>> byQuery = new HashMap<>();
+        try {
+            String raw = ollama.generate(batchPrompt(batch)).trim();
+            AiBatchPickResponse parsed = objectMapper.readValue(raw, AiBatchPickResponse.class);
+            if (parsed.results != null) {
+                for (AiBatchPickResponse.Result r : parsed.results) {
+                    if (r != null && r.q != null && r.selected != null) {
+                        byQuery.putIfAbsent(r.q, r.selected);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // everyone in the batch falls back
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            AiPickResponse response = new AiPickResponse();
+            response.selected = byQuery.getOrDefault(i + 1, List.of());
+            batch.get(i).result().complete(response);
+        }
+    }
+
+    private AiPickResponse pickOne(String query, List<Book> candidates) {
+        String prompt = """
+User request:
+"%s"
+
+Candidates (you MUST choose ONLY from this list):
+%s
+
+Return VALID JSON ONLY in this exact format (NO EXTRA TEXT, NO MARKDOWN):
+{
+  "selected": [
+    {"id": 1, "reason": "why it matches"},
+    {"id": 2, "reason": "why it matches"},
+    {"id": 3, "reason": "why it matches"}
+  ]
+}
+
+Rules:
+%s""".formatted(query, candidateList(candidates), RULES);
+
+        try {
+            String raw = ollama.generate(prompt).trim();
+            return objectMapper.readValue(raw, AiPickResponse.class);
+
+        } catch (Exception e) {
+            return empty();
+        }
+    }
+
+    private String batchPrompt(List<PendingPick> batch) {
+        StringBuilder requests = new StringBuilder();
+        for (int i = 0; i < batch.size(); i++) {
+            PendingPick p = batch.get(i);
+            requests.append("Request ").append(i + 1).append(":\n")
+                    .append('"').append(p.query()).append("\"\n")
+                    .append("Candidates for request ").append(i + 1).append(":\n")
+                    .append(candidateList(p.candidates()))
+                    .append("\n\n");
+        }
+
+        return """
+You will answer %d independent user requests. Each request has its own candidate list.
+
+%sReturn VALID JSON ONLY in this exact format (NO EXTRA TEXT, NO MARKDOWN), one entry per request, "q" is the request number:
+{
+  "results": [
+    {"q": 1, "selected": [
+      {"id": 1, "reason": "why it matches"},
+      {"id": 2, "reason": "why it matches"},
+      {"id": 3, "reason": "why it matches"}
+    ]}
+  ]
+}
+
+Rules (apply to every request):
+%s- Pick ids ONLY from that request's own candidate list
+""".formatted(batch.size(), requests, RULES);
+    }
+
+    private static String candidateList(List<Book> candidates) {
+        return candidates.stream()
+                .map(b -> "ID: " + b.getId()
+                        + " | Title: " + b.getTitle()
+                        + " | Author: " + b.getAuthor()
+                        + " | Desc: " + safeTrim(b.getDescription(), DESCRIPTION_CHARS))
+                .collect(Collectors.joining("\n"));
+    }
+
+    private static String safeTrim(String s, int max) {
+        if (s == null) return "";
+        s = s.replace("\n", " ").replace("\r", " ").trim();
+        return s.length() <= max ? s : s.substring(0, max) + "...";
+    }
+
+    private static AiPickResponse empty() {
+        AiPickResponse empty = new AiPickResponse();
+        empty.selected = List.of();
+        return empty;
+    }
+}
@@ -1,11 +1,17 @@
 package com.bookstore.backend.Book;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 
 @Entity
-@Table(name = "books")
+@Table(name = "books", indexes = {
+        @Index(name = "idx_books_title_id", columnList = "title, id"),
+        @Index(name = "idx_books_price_id", columnList = "price, id")
+})
+@EntityListeners(BookChangeListener.class)
+@DynamicUpdate   // an edit to title/price must not write back a stale stock_qty
 public class Book {
 
     @Id
@@ -0,0 +1,76 @@
+package com.bookstore.backend.Book;
+
+import com.bookstore.backend.Cache.TtlLruCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Read-through cache of books by id. Cached books are detached entities:
+ * read them, don't modify them, and use BookRepository.getReferenceById
+ * when another entity needs to point at one.
+ */
+@Component
+public class BookCache {
+
+    private final BookRepository bookRepository;
+    private final TtlLruCache<Integer, Book> byId;
+
+    public BookCache(BookRepository bookRepository,
+                     MeterRegistry meterRegistry,
+                     @Value("${bookstore.cache.books.max-size:10000}") int maxSize,
+                     @Value("${bookstore.cache.books.ttl:10m}") Duration ttl) {
+        this.bookRepository = bookRepository;
+        this.byId = new TtlLruCache<Integer, Book>(maxSize, ttl).bindTo(meterRegistry, "books");
+    }
+
+    public Optional<Book> findById(int id) {
+        return Optional.ofNullable(byId.getOrLoad(id, key -> bookRepository.findById(key).orElse(null)));
+    }
+
+    public boolean exists(int id) {
+        return findById(id).isPresent();
+    }
+
+    // Cached books in the order of ids; the misses are fetched with one query
+    public List<Book> findAllById(int[] ids) {
+        Map<Integer, Book> found = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (int id : ids) {
+            Book b = byId.get(id);
+            if (b != null) {
+                found.put(id, b);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            long stamp = byId.invalidationStamp();
+            List<Book> loaded = bookRepository.findAllById(missing);
+            boolean fresh = byId.invalidationStamp() == stamp;
+            for (Book b : loaded) {
+                if (fresh) byId.put(b.getId(), b);
+                found.put(b.getId(), b);
+            }
+        }
+
+        List<Book> out = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Book b = found.get(id);
+            if (b != null) out.add(b);
+        }
+        return out;
+    }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        byId.invalidate(event.bookId());
+    }
+}
@@ -0,0 +1,29 @@
+package com.bookstore.backend.Book;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+// JPA entity listener; Hibernate resolves it through Spring so the publisher gets injected.
+@Component
+public class BookChangeListener {
+
+    private final ApplicationEventPublisher events;
+
+    public BookChangeListener(ApplicationEventPublisher events) {
+        this.events = events;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSaved(Book book) {
+        events.publishEvent(BookChangedEvent.saved(book));
+    }
+
+    @PostRemove
+    public void onRemoved(Book book) {
+        events.publishEvent(BookChangedEvent.removed(book.getId()));
+    }
+}
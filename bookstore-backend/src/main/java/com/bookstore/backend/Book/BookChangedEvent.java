@@ -0,0 +1,18 @@
+package com.bookstore.backend.Book;
+
+// Published after a book row changes. book is null when only counters
+// (stock, ratings) moved and the text fields are unchanged.
+public record BookChangedEvent(int bookId, Book book, boolean removed) {
+
+    public static BookChangedEvent saved(Book book) {
+        return new BookChangedEvent(book.getId(), book, false);
+    }
+
+    public static BookChangedEvent counters(int bookId) {
+        return new BookChangedEvent(bookId, null, false);
+    }
+
+    public static BookChangedEvent removed(int bookId) {
+        return new BookChangedEvent(bookId, null, true);
+    }
+}
@@ -1,42 +1,175 @@
 package com.bookstore.backend.Book;
 
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/books")
 @CrossOrigin(origins = "http://localhost:5173")
 public class BookController {
+    private static final int SEARCH_LIMIT = 50;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final BigDecimal NO_PRICE = BigDecimal.valueOf(-1);
+
     private final BookRepository bookRepository;
+    private final BookRatingRepository ratingRepository;
+    private final BookSearchIndex searchIndex;
+    private final BookCache bookCache;
+    private final CatalogVersion catalogVersion;
 
-    public BookController(BookRepository bookRepository) {
+    public BookController(BookRepository bookRepository,
+                          BookRatingRepository ratingRepository,
+                          BookSearchIndex searchIndex,
+                          BookCache bookCache,
+                          CatalogVersion catalogVersion) {
         this.bookRepository = bookRepository;
+        this.ratingRepository = ratingRepository;
+        this.searchIndex = searchIndex;
+        this.bookCache = bookCache;
+        this.catalogVersion = catalogVersion;
     }
 
-    // Get all books
+    // Get all books (summaries only, optional ?fields=id,title,...)
     @GetMapping
-    public ResponseEntity<List<Book>> getAllBooks() {
-        List<Book> books = bookRepository.findAll();
-        return ResponseEntity.ok(books);
+    public ResponseEntity<?> getAllBooks(@RequestParam(required = false) String fields, WebRequest request) {
+        // A bad request is a 400 even when the client's ETag still matches
+        Set<String> selected;
+        try {
+            selected = BookFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+
+        // Tag is read before any data so it can only ever be older than the body
+        if (request.checkNotModified(catalogVersion.catalogTag())) {
+            return null;   // 304, ETag already set
+        }
+
+        List<BookSummary> books = bookRepository.findAllSummaries();
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(BookFields.select(books, selected));
+    }
+
+    // Keyset-paginated listing: GET /api/books/page?sort=title&size=24&cursor=...
+    @GetMapping("/page")
+    public ResponseEntity<?> getBookPage(@RequestParam(defaultValue = "id") String sort,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(defaultValue = "24") int size,
+                                         @RequestParam(required = false) BigDecimal minPrice,
+                                         @RequestParam(required = false) BigDecimal maxPrice,
+                                         @RequestParam(defaultValue = "false") boolean inStock,
+                                         @RequestParam(required = false) String fields,
+                                         WebRequest request) {
+        BookCursor after;
+        Set<String> selected;
+        try {
+            after = cursor == null || cursor.isBlank() ? null : BookCursor.decode(cursor);
+            selected = BookFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+
+        if (request.checkNotModified(catalogVersion.catalogTag())) {
+            return null;
+        }
+
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        Pageable probe = PageRequest.of(0, pageSize + 1);   // one extra row tells us if there is a next page
+        int afterId = after == null ? 0 : after.id();
+
+        List<BookSummary> rows;
+        switch (sort) {
+            case "id" -> rows = bookRepository.pageById(afterId, minPrice, maxPrice, inStock, probe);
+            case "title" -> rows = bookRepository.pageByTitle(
+                    after == null ? "" : after.key(), afterId, minPrice, maxPrice, inStock, probe);
+            case "price" -> {
+                BigDecimal afterPrice;
+                try {
+                    afterPrice = after == null ? NO_PRICE : new BigDecimal(after.key());
+                } catch (NumberFormatException e) {
+                    return ResponseEntity.badRequest().body("Invalid cursor");
+                }
+                rows = bookRepository.pageByPrice(afterPrice, afterId, minPrice, maxPrice, inStock, probe);
+            }
+            default -> {
+                return ResponseEntity.badRequest().body("sort must be one of title, price, id");
+            }
+        }
+
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            BookSummary last = rows.get(pageSize - 1);
+            String key = switch (sort) {
+                case "title" -> last.getTitle();
+                case "price" -> last.getPrice().toPlainString();
+                default -> "";
+            };
+            nextCursor = new BookCursor(key, last.getId()).encode();
+        }
+
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache())
+                .body(new BookPage(BookFields.select(rows, selected), nextCursor));
     }
 
     // Search books by title or author
     @GetMapping("/search")
-    public ResponseEntity<List<Book>> searchBooks(@RequestParam String query) {
+    public ResponseEntity<?> searchBooks(@RequestParam String query,
+                                         @RequestParam(required = false) String fields,
+                                         WebRequest request) {
+        Set<String> selected;
+        try {
+            selected = BookFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+
+        if (request.checkNotModified(catalogVersion.catalogTag())) {
+            return null;
+        }
+
         if (query == null || query.trim().isEmpty()) {
-            return ResponseEntity.ok(bookRepository.findAll());
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache())
+                    .body(BookFields.select(bookRepository.findAllSummaries(), selected));
         }
-        List<Book> results = bookRepository.searchByTitleOrAuthor(query.trim());
-        return ResponseEntity.ok(results);
+        if (!searchIndex.isReady()) {
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache())
+                    .body(BookFields.select(bookRepository.searchByTitleOrAuthor(query.trim()), selected));
+        }
+
+        // Rank in memory, only hydrate the hits from the DB
+        List<Integer> ids = searchIndex.search(query, SEARCH_LIMIT);
+        Map<Integer, Integer> rank = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            rank.put(ids.get(i), i);
+        }
+
+        List<BookSummary> results = bookRepository.findSummariesByIdIn(ids).stream()
+                .sorted(Comparator.comparing(b -> rank.get(b.getId())))
+                .toList();
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(BookFields.select(results, selected));
     }
 
-    // Get book by ID
+    // Get book by ID (the only endpoint that returns the description and rating histogram)
     @GetMapping("/{id}")
-    public ResponseEntity<Book> getBookById(@PathVariable int id) {
-        return bookRepository.findById(id)
-                .map(ResponseEntity::ok)
+    public ResponseEntity<BookDetail> getBookById(@PathVariable int id, WebRequest request) {
+        if (request.checkNotModified(catalogVersion.bookTag(id))) {
+            return null;
+        }
+
+        return bookCache.findById(id)
+                .map(book -> new BookDetail(book, ratingRepository.findById(id).orElse(null)))
+                .map(detail -> ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(detail))
                 .orElse(ResponseEntity.notFound().build());
     }
 }
@@ -0,0 +1,23 @@
+package com.bookstore.backend.Book;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Opaque keyset position: the last row's sort key plus its id as tie-breaker
+public record BookCursor(String key, int id) {
+
+    public String encode() {
+        String raw = (key == null ? "" : key) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static BookCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            return new BookCursor(raw.substring(0, sep), Integer.parseInt(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
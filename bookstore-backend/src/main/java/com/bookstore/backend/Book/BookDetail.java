@@ -0,0 +1,45 @@
+package com.bookstore.backend.Book;
+
+import java.math.BigDecimal;
+
+// GET /api/books/{id}: the whole book plus its rating totals
+public class BookDetail {
+    private int id;
+    private String title;
+    private String author;
+    private String description;
+    private BigDecimal price;
+    private Integer stockQty;
+    private String isbn;
+    private int reviewCount;
+    private Double averageRating;
+    private int[] ratingHistogram;
+
+    public BookDetail(Book book, BookRating rating) {
+        this.id = book.getId();
+        this.title = book.getTitle();
+        this.author = book.getAuthor();
+        this.description = book.getDescription();
+        this.price = book.getPrice();
+        this.stockQty = book.getStockQty();
+        this.isbn = book.getIsbn();
+        if (rating != null) {
+            this.reviewCount = rating.getReviewCount();
+            this.averageRating = BookRating.average(rating.getReviewCount(), rating.getRatingSum());
+            this.ratingHistogram = rating.getHistogram();
+        } else {
+            this.ratingHistogram = new int[5];
+        }
+    }
+
+    public int getId() { return id; }
+    public String getTitle() { return title; }
+    public String getAuthor() { return author; }
+    public String getDescription() { return description; }
+    public BigDecimal getPrice() { return price; }
+    public Integer getStockQty() { return stockQty; }
+    public String getIsbn() { return isbn; }
+    public int getReviewCount() { return reviewCount; }
+    public Double getAverageRating() { return averageRating; }
+    public int[] getRatingHistogram() { return ratingHistogram; }
+}
@@ -0,0 +1,55 @@
+package com.bookstore.backend.Book;
+
+import java.util.*;
+
+// Handles the optional ?fields=id,title,price selector on list endpoints
+public final class BookFields {
+
+    public static final List<String> ALL = List.of("id", "title", "author", "price", "stockQty", "isbn",
+            "reviewCount", "averageRating");
+
+    private BookFields() {}
+
+    // null means "no selector, serialize the summary as is"
+    public static Set<String> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+
+        Set<String> selected = new LinkedHashSet<>();
+        for (String f : fields.split(",")) {
+            String name = f.trim();
+            if (name.isEmpty()) continue;
+            if (!ALL.contains(name)) {
+                throw new IllegalArgumentException("Unknown field: " + name + ". Allowed: " + String.join(", ", ALL));
+            }
+            selected.add(name);
+        }
+        return selected.isEmpty() ? null : selected;
+    }
+
+    public static List<?> select(List<BookSummary> books, Set<String> fields) {
+        if (fields == null) {
+            return books;
+        }
+
+        List<Map<String, Object>> out = new ArrayList<>(books.size());
+        for (BookSummary b : books) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (String f : fields) {
+                row.put(f, switch (f) {
+                    case "id" -> b.getId();
+                    case "title" -> b.getTitle();
+                    case "author" -> b.getAuthor();
+                    case "price" -> b.getPrice();
+                    case "stockQty" -> b.getStockQty();
+                    case "reviewCount" -> b.getReviewCount();
+                    case "averageRating" -> b.getAverageRating();
+                    default -> b.getIsbn();
+                });
+            }
+            out.add(row);
+        }
+        return out;
+    }
+}
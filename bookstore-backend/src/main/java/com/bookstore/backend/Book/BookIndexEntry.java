@@ -0,0 +1,3 @@
+package com.bookstore.backend.Book;
+
+public record BookIndexEntry(Integer id, String title, String author) {}
@@ -0,0 +1,16 @@
+package com.bookstore.backend.Book;
+
+import java.util.List;
+
+public class BookPage {
+    private List<?> items;
+    private String nextCursor;
+
+    public BookPage(List<?> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<?> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+}
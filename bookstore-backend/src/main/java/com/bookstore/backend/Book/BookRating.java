@@ -0,0 +1,42 @@
+package com.bookstore.backend.Book;
+
+import jakarta.persistence.*;
+
+// Running rating totals for one book, kept in step with reviews; no row means no reviews yet
+@Entity
+@Table(name = "book_ratings")
+public class BookRating {
+
+    @Id
+    @Column(name = "book_id")
+    private int bookId;
+
+    @Column(name = "review_count", nullable = false)
+    private int reviewCount;
+
+    @Column(name = "rating_sum", nullable = false)
+    private long ratingSum;
+
+    // How many reviews gave 1..5 stars
+    @Column(nullable = false) private int r1;
+    @Column(nullable = false) private int r2;
+    @Column(nullable = false) private int r3;
+    @Column(nullable = false) private int r4;
+    @Column(nullable = false) private int r5;
+
+    public int getBookId() { return bookId; }
+    public int getReviewCount() { return reviewCount; }
+    public long getRatingSum() { return ratingSum; }
+
+    public int[] getHistogram() {
+        return new int[] { r1, r2, r3, r4, r5 };
+    }
+
+    // Two decimals; null when there is nothing to average
+    public static Double average(Integer reviewCount, Long ratingSum) {
+        if (reviewCount == null || reviewCount == 0 || ratingSum == null) {
+            return null;
+        }
+        return Math.round(ratingSum * 100.0 / reviewCount) / 100.0;
+    }
+}
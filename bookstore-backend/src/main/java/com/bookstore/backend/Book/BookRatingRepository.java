@@ -0,0 +1,21 @@
+package com.bookstore.backend.Book;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface BookRatingRepository extends JpaRepository<BookRating, Integer> {
+
+    // Counts one more review in a single statement; concurrent reviews of a book
+    // serialize on its row instead of overwriting each other's totals
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO book_ratings (book_id, review_count, rating_sum, r1, r2, r3, r4, r5) " +
+            "VALUES (:bookId, 1, :rating, :rating = 1, :rating = 2, :rating = 3, :rating = 4, :rating = 5) " +
+            "ON DUPLICATE KEY UPDATE review_count = review_count + 1, rating_sum = rating_sum + VALUES(rating_sum), " +
+            "r1 = r1 + VALUES(r1), r2 = r2 + VALUES(r2), r3 = r3 + VALUES(r3), r4 = r4 + VALUES(r4), r5 = r5 + VALUES(r5)",
+            nativeQuery = true)
+    int addRating(@Param("bookId") int bookId, @Param("rating") int rating);
+}
@@ -1,16 +1,75 @@
 package com.bookstore.backend.Book;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 
 
-public interface BookRepository extends JpaRepository<Book, Integer> {
+public interface BookRepository extends JpaRepository<Book, Integer>, BookStockOperations {
+
+    // Ratings ride along from book_ratings; listings never read the reviews table
+    String SUMMARY = "SELECT new com.bookstore.backend.Book.BookSummary(" +
+            "b.id, b.title, b.author, b.price, b.stockQty, b.isbn, r.reviewCount, r.ratingSum) " +
+            "FROM Book b LEFT JOIN BookRating r ON r.bookId = b.id";
+
+    String PAGE_FILTERS = " AND (:minPrice IS NULL OR b.price >= :minPrice)" +
+            " AND (:maxPrice IS NULL OR b.price <= :maxPrice)" +
+            " AND (:inStock = false OR b.stockQty > 0)";
 
     //Custom query to search by title OR author
-    @Query("SELECT b FROM Book b WHERE LOWER(b.title) LIKE LOWER(CONCAT('%', :searchTerm, '%')) " +
+    @Query(SUMMARY + " WHERE LOWER(b.title) LIKE LOWER(CONCAT('%', :searchTerm, '%')) " +
             "OR LOWER(b.author) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
-    List<Book> searchByTitleOrAuthor(@Param("searchTerm") String searchTerm);
+    List<BookSummary> searchByTitleOrAuthor(@Param("searchTerm") String searchTerm);
+
+    @Query(SUMMARY + " ORDER BY b.id")
+    List<BookSummary> findAllSummaries();
+
+    @Query(SUMMARY + " WHERE b.id IN :ids")
+    List<BookSummary> findSummariesByIdIn(@Param("ids") Collection<Integer> ids);
+
+    // Keyset scan used to (re)build the in-memory search index
+    @Query("SELECT new com.bookstore.backend.Book.BookIndexEntry(b.id, b.title, b.author) FROM Book b " +
+            "WHERE b.id > :afterId ORDER BY b.id")
+    List<BookIndexEntry> findIndexEntries(@Param("afterId") int afterId, Pageable pageable);
+
+    // Same scan with the description, for the recommendation term index
+    @Query("SELECT new com.bookstore.backend.Book.BookTextEntry(b.id, b.title, b.author, b.description) FROM Book b " +
+            "WHERE b.id > :afterId ORDER BY b.id")
+    List<BookTextEntry> findTextEntries(@Param("afterId") int afterId, Pageable pageable);
+
+    List<Book> findAllByOrderByIdAsc(Pageable pageable);
+
+    @Query("SELECT b.stockQty FROM Book b WHERE b.id = :id")
+    Integer findStockQtyById(@Param("id") int id);
+
+    // Keyset pages for the catalog listing; pass pageable size+1 to detect a next page
+    @Query(SUMMARY + " WHERE b.id > :afterId" + PAGE_FILTERS + " ORDER BY b.id")
+    List<BookSummary> pageById(@Param("afterId") int afterId,
+                        @Param("minPrice") BigDecimal minPrice,
+                        @Param("maxPrice") BigDecimal maxPrice,
+                        @Param("inStock") boolean inStock,
+                        Pageable pageable);
+
+    @Query(SUMMARY + " WHERE (b.title > :afterTitle OR (b.title = :afterTitle AND b.id > :afterId))" +
+            PAGE_FILTERS + " ORDER BY b.title, b.id")
+    List<BookSummary> pageByTitle(@Param("afterTitle") String afterTitle,
+                           @Param("afterId") int afterId,
+                           @Param("minPrice") BigDecimal minPrice,
+                           @Param("maxPrice") BigDecimal maxPrice,
+                           @Param("inStock") boolean inStock,
+                           Pageable pageable);
+
+    @Query(SUMMARY + " WHERE (b.price > :afterPrice OR (b.price = :afterPrice AND b.id > :afterId))" +
+            PAGE_FILTERS + " ORDER BY b.price, b.id")
+    List<BookSummary> pageByPrice(@Param("afterPrice") BigDecimal afterPrice,
+                           @Param("afterId") int afterId,
+                           @Param("minPrice") BigDecimal minPrice,
+                           @Param("maxPrice") BigDecimal maxPrice,
+                           @Param("inStock") boolean inStock,
+                           Pageable pageable);
 }
@@ -0,0 +1,366 @@
+package com.bookstore.backend.Book;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over title and author tokens used by /api/books/search.
+ * Every query token is matched as a prefix of an indexed token, so partial
+ * words typed into the search box still hit. All tokens must match (AND).
+ *
+ * A prefix matches every term that starts with it, however many there are.
+ * Scores are kept in pooled arrays indexed by book id (ids are
+ * auto-increment, so the arrays stay close to the catalog size), so a
+ * query allocates little beyond its result, even for a one-letter prefix.
+ */
+@Component
+public class BookSearchIndex {
+
+    private static final int LOAD_BATCH_SIZE = 5_000;
+
+    private static final byte TITLE = 1;
+    private static final byte AUTHOR = 2;
+
+    private static final Logger log = LoggerFactory.getLogger(BookSearchIndex.class);
+
+    private final BookRepository bookRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Queue<Scratch> scratchPool = new ConcurrentLinkedQueue<>();
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<Integer, String[]> termsByBook = new HashMap<>();
+    private int maxBookId;
+    private volatile boolean ready;
+
+    public BookSearchIndex(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        int afterId = 0;
+        int loaded = 0;
+        List<BookIndexEntry> batch;
+        do {
+            batch = bookRepository.findIndexEntries(afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+            lock.writeLock().lock();
+            try {
+                for (BookIndexEntry e : batch) {
+                    put(e.id(), e.title(), e.author());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            loaded += batch.size();
+            if (!batch.isEmpty()) {
+                afterId = batch.get(batch.size() - 1).id();
+            }
+        } while (batch.size() == LOAD_BATCH_SIZE);
+
+        ready = true;
+        log.info("Search index loaded {} books", loaded);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (!event.removed() && event.book() == null) {
+            return;   // stock/rating only, nothing to re-index
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (event.removed()) {
+                remove(event.bookId());
+            } else {
+                put(event.bookId(), event.book().getTitle(), event.book().getAuthor());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Returns up to limit book ids, best match first
+    public List<Integer> search(String query, int limit) {
+        Set<String> tokens = new LinkedHashSet<>(BookTokenizer.tokenize(query));
+        if (tokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<TokenMatch> matches = new ArrayList<>();
+            for (String token : tokens) {
+                TokenMatch m = expand(token);
+                if (m.terms().isEmpty()) {
+                    return List.of();
+                }
+                matches.add(m);
+            }
+
+            // Seed candidates from the rarest token, then narrow them with the others
+            matches.sort(Comparator.comparingInt(TokenMatch::postings));
+
+            Scratch s = scratchPool.poll();
+            if (s == null) {
+                s = new Scratch();
+            }
+            try {
+                s.ensure(maxBookId + 1, matches.get(0).postings(), limit);
+                return score(s, matches, limit);
+            } finally {
+                scratchPool.offer(s);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Leaves s.scores and s.best all-zero again
+    private static List<Integer> score(Scratch s, List<TokenMatch> matches, int limit) {
+        int candidates = 0;
+        TokenMatch seed = matches.get(0);
+        for (Map.Entry<String, Postings> term : seed.terms()) {
+            Postings p = term.getValue();
+            int exact = term.getKey().equals(seed.token()) ? 2 : 1;
+            for (int i = 0; i < p.size; i++) {
+                int id = p.ids[i];
+                int w = weight(p.fields[i]) * exact;
+                if (s.scores[id] == 0) {
+                    s.candidates[candidates++] = id;
+                }
+                s.scores[id] = Math.max(s.scores[id], w);
+            }
+        }
+
+        for (int t = 1; t < matches.size() && candidates > 0; t++) {
+            TokenMatch m = matches.get(t);
+            // Whichever is less work: look each candidate up in every term, or walk the postings
+            if ((long) candidates * m.terms().size() < m.postings()) {
+                for (int c = 0; c < candidates; c++) {
+                    int id = s.candidates[c];
+                    for (Map.Entry<String, Postings> term : m.terms()) {
+                        int idx = term.getValue().indexOf(id);
+                        if (idx >= 0) {
+                            int exact = term.getKey().equals(m.token()) ? 2 : 1;
+                            s.best[id] = Math.max(s.best[id], weight(term.getValue().fields[idx]) * exact);
+                        }
+                    }
+                }
+            } else {
+                for (Map.Entry<String, Postings> term : m.terms()) {
+                    Postings p = term.getValue();
+                    int exact = term.getKey().equals(m.token()) ? 2 : 1;
+                    for (int i = 0; i < p.size; i++) {
+                        int id = p.ids[i];
+                        if (s.scores[id] != 0) {
+                            s.best[id] = Math.max(s.best[id], weight(p.fields[i]) * exact);
+                        }
+                    }
+                }
+            }
+
+            int kept = 0;
+            for (int c = 0; c < candidates; c++) {
+                int id = s.candidates[c];
+                if (s.best[id] == 0) {
+                    s.scores[id] = 0;   // this token missed it
+                } else {
+                    s.scores[id] += s.best[id];
+                    s.best[id] = 0;
+                    s.candidates[kept++] = id;
+                }
+            }
+            candidates = kept;
+        }
+
+        // Bounded min-heap of the best `limit` candidates
+        int heapSize = 0;
+        for (int c = 0; c < candidates; c++) {
+            int id = s.candidates[c];
+            int score = s.scores[id];
+            s.scores[id] = 0;   // reset scratch as we go
+
+            if (heapSize < limit) {
+                s.heapIds[heapSize] = id;
+                s.heapScores[heapSize] = score;
+                siftUp(s, heapSize++);
+            } else if (better(score, id, s.heapScores[0], s.heapIds[0])) {
+                s.heapIds[0] = id;
+                s.heapScores[0] = score;
+                siftDown(s, 0, heapSize);
+            }
+        }
+
+        Integer[] ids = new Integer[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            ids[i] = s.heapIds[0];
+            s.heapIds[0] = s.heapIds[i];
+            s.heapScores[0] = s.heapScores[i];
+            siftDown(s, 0, i);
+        }
+        return Arrays.asList(ids);
+    }
+
+    private TokenMatch expand(String token) {
+        List<Map.Entry<String, Postings>> out = new ArrayList<>();
+        int postings = 0;
+        for (Map.Entry<String, Postings> e : terms.subMap(token, true, token + Character.MAX_VALUE, false).entrySet()) {
+            out.add(e);
+            postings += e.getValue().size;
+        }
+        return new TokenMatch(token, out, postings);
+    }
+
+    private static int weight(byte fields) {
+        int w = 0;
+        if ((fields & TITLE) != 0) w += 4;
+        if ((fields & AUTHOR) != 0) w += 2;
+        return w;
+    }
+
+    // Higher score wins; ties go to the lower id (older book)
+    private static boolean better(int score, int id, int otherScore, int otherId) {
+        return score > otherScore || (score == otherScore && id < otherId);
+    }
+
+    private static void siftUp(Scratch s, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(s.heapScores[parent], s.heapIds[parent], s.heapScores[i], s.heapIds[i])) break;
+            swap(s, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(Scratch s, int i, int size) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) return;
+            int worst = left;
+            int right = left + 1;
+            if (right < size && better(s.heapScores[worst], s.heapIds[worst], s.heapScores[right], s.heapIds[right])) {
+                worst = right;
+            }
+            if (!better(s.heapScores[i], s.heapIds[i], s.heapScores[worst], s.heapIds[worst])) return;
+            swap(s, i, worst);
+            i = worst;
+        }
+    }
+
+    private static void swap(Scratch s, int a, int b) {
+        int id = s.heapIds[a];
+        s.heapIds[a] = s.heapIds[b];
+        s.heapIds[b] = id;
+        int score = s.heapScores[a];
+        s.heapScores[a] = s.heapScores[b];
+        s.heapScores[b] = score;
+    }
+
+    // Callers hold the write lock
+    private void put(int bookId, String title, String author) {
+        remove(bookId);
+
+        Map<String, Byte> fields = new HashMap<>();
+        for (String t : BookTokenizer.tokenize(title)) fields.merge(t, TITLE, (a, b) -> (byte) (a | b));
+        for (String t : BookTokenizer.tokenize(author)) fields.merge(t, AUTHOR, (a, b) -> (byte) (a | b));
+
+        String[] bookTerms = new String[fields.size()];
+        int i = 0;
+        for (Map.Entry<String, Byte> e : fields.entrySet()) {
+            Postings p = terms.computeIfAbsent(e.getKey(), k -> new Postings());
+            p.add(bookId, e.getValue());
+            bookTerms[i++] = terms.ceilingKey(e.getKey());   // share the map's key instance
+        }
+        termsByBook.put(bookId, bookTerms);
+        maxBookId = Math.max(maxBookId, bookId);
+    }
+
+    private void remove(int bookId) {
+        String[] old = termsByBook.remove(bookId);
+        if (old == null) return;
+
+        for (String term : old) {
+            Postings p = terms.get(term);
+            if (p != null && p.remove(bookId) && p.size == 0) {
+                terms.remove(term);
+            }
+        }
+    }
+
+    // Query accumulators; scores and best are always all-zero between queries
+    private static final class Scratch {
+        int[] scores = new int[0];       // by book id, 0 = not a candidate
+        int[] best = new int[0];         // by book id, the current token's best weight
+        int[] candidates = new int[0];
+        int[] heapIds = new int[0];
+        int[] heapScores = new int[0];
+
+        void ensure(int ids, int postings, int limit) {
+            if (scores.length < ids) {
+                int size = ids + ids / 8;   // headroom, so each new book doesn't reallocate
+                scores = new int[size];
+                best = new int[size];
+            }
+            if (candidates.length < postings) {
+                candidates = new int[postings];
+            }
+            if (heapIds.length < limit) {
+                heapIds = new int[limit];
+                heapScores = new int[limit];
+            }
+        }
+    }
+
+    private record TokenMatch(String token, List<Map.Entry<String, Postings>> terms, int postings) {}
+
+    // Sorted book ids with a parallel field bitmask
+    private static final class Postings {
+        int[] ids = new int[2];
+        byte[] fields = new byte[2];
+        int size;
+
+        int indexOf(int id) {
+            int idx = Arrays.binarySearch(ids, 0, size, id);
+            return idx >= 0 ? idx : -1;
+        }
+
+        void add(int id, byte field) {
+            int idx = Arrays.binarySearch(ids, 0, size, id);
+            if (idx >= 0) {
+                fields[idx] |= field;
+                return;
+            }
+            idx = -idx - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                fields = Arrays.copyOf(fields, size * 2);
+            }
+            System.arraycopy(ids, idx, ids, idx + 1, size - idx);
+            System.arraycopy(fields, idx, fields, idx + 1, size - idx);
+            ids[idx] = id;
+            fields[idx] = field;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int idx = Arrays.binarySearch(ids, 0, size, id);
+            if (idx < 0) return false;
+            System.arraycopy(ids, idx + 1, ids, idx, size - idx - 1);
+            System.arraycopy(fields, idx + 1, fields, idx, size - idx - 1);
+            size--;
+            return true;
+        }
+    }
+}
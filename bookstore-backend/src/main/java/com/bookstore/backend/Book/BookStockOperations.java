@@ -0,0 +1,13 @@
+package com.bookstore.backend.Book;
+
+import java.util.List;
+import java.util.Map;
+
+// Custom BookRepository fragment for stock changes that must not read-modify-write
+public interface BookStockOperations {
+
+    // Takes quantity off each book only where enough is left, in id order.
+    // Returns the ids that fell short; empty means every line was taken.
+    // Callers must roll back when anything is returned.
+    List<Integer> decrementStock(Map<Integer, Integer> quantityByBook);
+}
@@ -0,0 +1,59 @@
+package com.bookstore.backend.Book;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * One conditional UPDATE per line, sent as a single JDBC batch. The row lock
+ * is held only from the UPDATE to commit, and the WHERE clause makes the
+ * check and the decrement one step, so concurrent buyers can't oversell.
+ */
+public class BookStockOperationsImpl implements BookStockOperations {
+
+    private static final String DECREMENT =
+            "UPDATE books SET stock_qty = stock_qty - ? WHERE id = ? AND stock_qty >= ?";
+
+    private final JdbcTemplate jdbc;
+    private final ApplicationEventPublisher events;
+
+    public BookStockOperationsImpl(JdbcTemplate jdbc, ApplicationEventPublisher events) {
+        this.jdbc = jdbc;
+        this.events = events;
+    }
+
+    @Override
+    public List<Integer> decrementStock(Map<Integer, Integer> quantityByBook) {
+        if (quantityByBook.isEmpty()) {
+            return List.of();
+        }
+
+        // Same lock order in every checkout, so two carts can't deadlock each other
+        List<Map.Entry<Integer, Integer>> lines = new ArrayList<>(new TreeMap<>(quantityByBook).entrySet());
+
+        int[] updated = jdbc.batchUpdate(DECREMENT, lines, lines.size(), (ps, line) -> {
+            ps.setInt(1, line.getValue());
+            ps.setInt(2, line.getKey());
+            ps.setInt(3, line.getValue());
+        })[0];
+
+        List<Integer> shortBooks = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (updated[i] == 0) {
+                shortBooks.add(lines.get(i).getKey());
+            }
+        }
+
+        if (shortBooks.isEmpty()) {
+            // Delivered after commit; stock-only change, so search indexes stay put
+            for (Map.Entry<Integer, Integer> line : lines) {
+                events.publishEvent(BookChangedEvent.counters(line.getKey()));
+            }
+        }
+        return shortBooks;
+    }
+}
@@ -0,0 +1,44 @@
+package com.bookstore.backend.Book;
+
+import java.math.BigDecimal;
+
+// List view of a book; description is only served by GET /api/books/{id}
+public class BookSummary {
+    private int id;
+    private String title;
+    private String author;
+    private BigDecimal price;
+    private Integer stockQty;
+    private String isbn;
+    private int reviewCount;
+    private Double averageRating;
+
+    // Rating columns come from a LEFT JOIN on book_ratings, so both are null for unreviewed books
+    public BookSummary(Integer id, String title, String author, BigDecimal price, Integer stockQty, String isbn,
+                       Integer reviewCount, Long ratingSum) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.price = price;
+        this.stockQty = stockQty;
+        this.isbn = isbn;
+        this.reviewCount = reviewCount == null ? 0 : reviewCount;
+        this.averageRating = BookRating.average(reviewCount, ratingSum);
+    }
+
+    public static BookSummary from(Book book, BookRating rating) {
+        return new BookSummary(book.getId(), book.getTitle(), book.getAuthor(),
+                book.getPrice(), book.getStockQty(), book.getIsbn(),
+                rating == null ? null : rating.getReviewCount(),
+                rating == null ? null : rating.getRatingSum());
+    }
+
+    public int getId() { return id; }
+    public String getTitle() { return title; }
+    public String getAuthor() { return author; }
+    public BigDecimal getPrice() { return price; }
+    public Integer getStockQty() { return stockQty; }
+    public String getIsbn() { return isbn; }
+    public int getReviewCount() { return reviewCount; }
+    public Double getAverageRating() { return averageRating; }
+}
@@ -0,0 +1,3 @@
+package com.bookstore.backend.Book;
+
+public record BookTextEntry(Integer id, String title, String author, String description) {}
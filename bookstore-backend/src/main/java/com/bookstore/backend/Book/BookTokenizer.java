@@ -0,0 +1,30 @@
+package com.bookstore.backend.Book;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public final class BookTokenizer {
+
+    private BookTokenizer() {}
+
+    // Lowercased runs of letters/digits, e.g. "Release It!" -> [release, it]
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
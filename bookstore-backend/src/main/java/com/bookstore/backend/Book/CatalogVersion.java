@@ -0,0 +1,51 @@
+package com.bookstore.backend.Book;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counters behind the catalog ETags. The epoch makes tags handed
+ * out before a restart stop matching, since the counters start over.
+ * Only books that changed since startup take up an entry in the map.
+ */
+@Component
+public class CatalogVersion {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong catalog = new AtomicLong();
+    private final AtomicLong text = new AtomicLong();
+    private final Map<Integer, Long> books = new ConcurrentHashMap<>();
+
+    public long current() {
+        return catalog.get();
+    }
+
+    // Moves only when titles/authors/descriptions may have changed, not on stock or rating updates
+    public long textVersion() {
+        return text.get();
+    }
+
+    public String catalogTag() {
+        return "\"c-" + epoch + "-" + catalog.get() + "\"";
+    }
+
+    public String bookTag(int bookId) {
+        return "\"b-" + epoch + "-" + bookId + "-" + books.getOrDefault(bookId, 0L) + "\"";
+    }
+
+    // Runs after BookCache has dropped the entry, so a new tag never goes out with old data
+    @Order(10)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        long v = catalog.incrementAndGet();
+        books.put(event.bookId(), v);
+        if (event.removed() || event.book() != null) {
+            text.incrementAndGet();
+        }
+    }
+}
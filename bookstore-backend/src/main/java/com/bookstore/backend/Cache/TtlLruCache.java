@@ -0,0 +1,159 @@
+package com.bookstore.backend.Cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded cache with LRU eviction and a time-to-live per entry. Keys are
+ * spread over a few independently locked segments so readers don't all
+ * queue on one monitor.
+ */
+public class TtlLruCache<K, V> {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+    private final long ttlNanos;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public TtlLruCache(int maxSize, Duration ttl) {
+        int perSegment = Math.max(1, maxSize / SEGMENTS);
+        this.segments = (Segment<K, V>[]) new Segment<?, ?>[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>(perSegment, evictions);
+        }
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public V get(K key) {
+        Segment<K, V> seg = segmentFor(key);
+        synchronized (seg) {
+            Timed<V> e = seg.get(key);
+            if (e != null && e.expiresAt - System.nanoTime() > 0) {
+                hits.increment();
+                return e.value;
+            }
+            if (e != null) {
+                seg.remove(key);
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(K key, V value) {
+        Segment<K, V> seg = segmentFor(key);
+        synchronized (seg) {
+            seg.put(key, new Timed<>(value, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    // Loads on miss; null results are not cached. A load that overlaps an
+    // invalidation is returned but not stored, so stale rows can't stick.
+    public V getOrLoad(K key, Function<K, V> loader) {
+        V cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long before = invalidations.get();
+        V loaded = loader.apply(key);
+        if (loaded != null && invalidations.get() == before) {
+            put(key, loaded);
+        }
+        return loaded;
+    }
+
+    // Stamp for callers that load in bulk: only put() if it hasn't moved since
+    public long invalidationStamp() {
+        return invalidations.get();
+    }
+
+    public void invalidate(K key) {
+        invalidations.incrementAndGet();
+        Segment<K, V> seg = segmentFor(key);
+        synchronized (seg) {
+            seg.remove(key);
+        }
+    }
+
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        for (Segment<K, V> seg : segments) {
+            synchronized (seg) {
+                seg.clear();
+            }
+        }
+    }
+
+    public long size() {
+        long n = 0;
+        for (Segment<K, V> seg : segments) {
+            synchronized (seg) {
+                n += seg.size();
+            }
+        }
+        return n;
+    }
+
+    public long hits() { return hits.sum(); }
+    public long misses() { return misses.sum(); }
+    public long evictions() { return evictions.sum(); }
+
+    // Exposes bookstore.cache.* meters tagged with the cache name (see /actuator/metrics)
+    public TtlLruCache<K, V> bindTo(MeterRegistry registry, String name) {
+        FunctionCounter.builder("bookstore.cache.hits", this, TtlLruCache::hits)
+                .tag("cache", name).register(registry);
+        FunctionCounter.builder("bookstore.cache.misses", this, TtlLruCache::misses)
+                .tag("cache", name).register(registry);
+        FunctionCounter.builder("bookstore.cache.evictions", this, TtlLruCache::evictions)
+                .tag("cache", name).register(registry);
+        Gauge.builder("bookstore.cache.size", this, TtlLruCache::size)
+                .tag("cache", name).register(registry);
+        return this;
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENTS - 1)];
+    }
+
+    private record Timed<V>(V value, long expiresAt) {}
+
+    private static final class Segment<K, V> extends LinkedHashMap<K, Timed<V>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+        private final LongAdder evictions;
+
+        Segment(int maxSize, LongAdder evictions) {
+            super(16, 0.75f, true);   // access order = LRU
+            this.maxSize = maxSize;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Timed<V>> eldest) {
+            if (size() > maxSize) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
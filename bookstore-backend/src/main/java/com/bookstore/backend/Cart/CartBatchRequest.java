@@ -0,0 +1,14 @@
+package com.bookstore.backend.Cart;
+
+import java.util.List;
+
+public class CartBatchRequest {
+    private int userId;
+    private List<CartOperation> operations;
+
+    public int getUserId() { return userId; }
+    public void setUserId(int userId) { this.userId = userId; }
+
+    public List<CartOperation> getOperations() { return operations; }
+    public void setOperations(List<CartOperation> operations) { this.operations = operations; }
+}
@@ -1,125 +1,260 @@
 package com.bookstore.backend.Cart;
 
 import com.bookstore.backend.Book.Book;
-import com.bookstore.backend.Book.BookRepository;
-import com.bookstore.backend.User.User;
-import com.bookstore.backend.User.UserRepository;
+import com.bookstore.backend.Book.BookCache;
+import com.bookstore.backend.Cache.TtlLruCache;
+import com.bookstore.backend.Inventory.Inventory;
+import com.bookstore.backend.Inventory.StockHolds;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/cart")
 @CrossOrigin(origins = {"http://localhost:3000", "http://localhost:5173"})
 public class CartController {
 
+    private static final int MAX_BATCH_OPERATIONS = 200;
+
     private final CartRepository carts;
-    private final CartItemRepository cartItems;
-    private final UserRepository users;
-    private final BookRepository books;
+    private final CartStore cartStore;
+    private final TtlLruCache<Integer, Integer> cartIds;
+    private final TransactionTemplate cartCreation;
+    private final BookCache bookCache;
+    private final Inventory inventory;
+    private final Optional<StockHolds> stockHolds;
 
     public CartController(CartRepository carts,
-                          CartItemRepository cartItems,
-                          UserRepository users,
-                          BookRepository books) {
+                          CartStore cartStore,
+                          BookCache bookCache,
+                          Inventory inventory,
+                          Optional<StockHolds> stockHolds,
+                          MeterRegistry meterRegistry,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${bookstore.cache.cart-ids.max-size:100000}") int cartIdsMaxSize,
+                          @Value("${bookstore.cache.cart-ids.ttl:12h}") Duration cartIdsTtl) {
         this.carts = carts;
-        this.cartItems = cartItems;
-        this.users = users;
-        this.books = books;
+        this.cartStore = cartStore;
+        this.cartIds = new TtlLruCache<Integer, Integer>(cartIdsMaxSize, cartIdsTtl)
+                .bindTo(meterRegistry, "cart-ids");
+        this.cartCreation = new TransactionTemplate(transactionManager);
+        this.cartCreation.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.bookCache = bookCache;
+        this.inventory = inventory;
+        this.stockHolds = stockHolds;
     }
 
-    private Cart getOrCreateCartForUser(int userId) {
-        return carts.findByUser_Id(userId).orElseGet(() -> {
-            User user = users.findById(userId)
-                    .orElseThrow(() -> new IllegalArgumentException("User not found"));
+    // With holds on, the line's stock is set aside now instead of failing at checkout
+    private boolean holdStock(int cartId, int bookId, int qty) {
+        return stockHolds.map(h -> h.hold(cartId, bookId, qty)).orElse(true);
+    }
 
-            Cart newCart = new Cart();
-            newCart.setUser(user);
-            return carts.save(newCart);
-        });
+    // With holds on, reading a line, holding its stock and writing it must not interleave
+    // with another request on the same cart; without holds there is nothing to keep in step
+    private <T> T editCart(int cartId, Supplier<T> edit) {
+        return stockHolds.isPresent() ? stockHolds.get().forCart(cartId, edit) : edit.get();
+    }
+
+    private ResponseEntity<?> notEnoughStock(int bookId, int requested) {
+        String title = bookCache.findById(bookId).map(Book::getTitle).orElse("book " + bookId);
+        return ResponseEntity.status(409)
+                .body("Not enough stock for \"" + title
+                        + "\". In stock: " + inventory.available(bookId)
+                        + ", requested: " + requested);
     }
 
-    private List<CartItemResponse> toResponse(Cart cart) {
-        return cart.getItems().stream()
-                .map(item -> new CartItemResponse(
-                        item.getBook().getId(),
-                        item.getBook().getTitle(),
-                        item.getBook().getAuthor(),
-                        item.getBook().getPrice().doubleValue(),
-                        item.getQuantity(),
-                        item.getBook().getIsbn()
-                ))
-                .collect(Collectors.toList());
+    private int getOrCreateCartIdForUser(int userId) {
+        return cartIdForUser(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
+    }
+
+    // A user's cart id never changes, so after the first call it comes from memory
+    private Optional<Integer> cartIdForUser(int userId) {
+        Integer cached = cartIds.get(userId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Optional<Integer> cartId = carts.findIdByUserId(userId);
+        if (cartId.isEmpty()) {
+            // Never in a caller's transaction: its snapshot could predate a parallel request's
+            // insert, and a rollback would leave an id in the cache for a cart that isn't there
+            cartId = cartCreation.execute(status -> {
+                carts.createIfMissing(userId);
+                return carts.findIdByUserId(userId);   // ours or the one a parallel request created
+            });
+        }
+        // Committed by now, whichever request inserted it
+        cartId.ifPresent(id -> cartIds.put(userId, id));
+        return cartId;
+    }
+
+    private List<CartItemResponse> toResponse(int cartId) {
+        return cartStore.view(cartId);
     }
 
     @GetMapping("/{userId}")
     public ResponseEntity<?> getCart(@PathVariable int userId) {
-        if (!users.existsById(userId)) {
+        Optional<Integer> cartId = cartIdForUser(userId);
+        if (cartId.isEmpty()) {
             return ResponseEntity.badRequest().body("User not found");
         }
 
-        Cart cart = getOrCreateCartForUser(userId);
-        return ResponseEntity.ok(toResponse(cart));
+        return ResponseEntity.ok(toResponse(cartId.get()));
     }
 
     @PostMapping("/add")
     public ResponseEntity<?> addToCart(@RequestBody CartItemRequest req) {
 
-        Cart cart = getOrCreateCartForUser(req.getUserId());
+        int cartId = getOrCreateCartIdForUser(req.getUserId());
 
-        Book book = books.findById(req.getBookId())
-                .orElseThrow(() -> new IllegalArgumentException("Book not found"));
+        if (!bookCache.exists(req.getBookId())) {
+            throw new IllegalArgumentException("Book not found");
+        }
 
         int qty = req.getQuantity() <= 0 ? 1 : req.getQuantity();
 
-        CartItem item = cartItems
-                .findByCartIdAndBookId(cart.getId(), req.getBookId())
-                .orElseGet(() -> {
-                    CartItem ci = new CartItem();
-                    ci.setCart(cart);
-                    ci.setBook(book);
-                    ci.setQuantity(0);
-                    return ci;
-                });
-
-        item.setQuantity(item.getQuantity() + qty);
-        cartItems.save(item);
-
-        Cart updated = carts.findById(cart.getId()).orElse(cart);
-        return ResponseEntity.ok(toResponse(updated));
+        ResponseEntity<?> refused = editCart(cartId, () -> {
+            if (stockHolds.isPresent()) {
+                int newQty = cartStore.quantity(cartId, req.getBookId()) + qty;
+                if (!holdStock(cartId, req.getBookId(), newQty)) {
+                    return notEnoughStock(req.getBookId(), newQty);
+                }
+            }
+            cartStore.add(cartId, req.getBookId(), qty);
+            return null;
+        });
+        return refused != null ? refused : ResponseEntity.ok(toResponse(cartId));
     }
 
     @PostMapping("/update")
     public ResponseEntity<?> updateQuantity(@RequestBody CartItemRequest req) {
 
-        Cart cart = getOrCreateCartForUser(req.getUserId());
+        int cartId = getOrCreateCartIdForUser(req.getUserId());
+
+        ResponseEntity<?> refused = editCart(cartId, () -> {
+            if (req.getQuantity() <= 0) {
+                if (!cartStore.remove(cartId, req.getBookId())) {
+                    return ResponseEntity.badRequest().body("Cart item not found");
+                }
+                stockHolds.ifPresent(h -> h.release(cartId, req.getBookId()));
+            } else {
+                if (stockHolds.isPresent() && cartStore.quantity(cartId, req.getBookId()) == 0) {
+                    return ResponseEntity.badRequest().body("Cart item not found");
+                }
+                if (!holdStock(cartId, req.getBookId(), req.getQuantity())) {
+                    return notEnoughStock(req.getBookId(), req.getQuantity());
+                }
+                if (!cartStore.set(cartId, req.getBookId(), req.getQuantity())) {
+                    stockHolds.ifPresent(h -> h.release(cartId, req.getBookId()));
+                    return ResponseEntity.badRequest().body("Cart item not found");
+                }
+            }
+            return null;
+        });
+        return refused != null ? refused : ResponseEntity.ok(toResponse(cartId));
+    }
+
+    @DeleteMapping("/clear/{userId}")
+    public ResponseEntity<?> clearCart(@PathVariable int userId) {
+        int cartId = getOrCreateCartIdForUser(userId);
+        editCart(cartId, () -> {
+            stockHolds.ifPresent(h -> toResponse(cartId).forEach(line -> h.release(cartId, line.getBookId())));
+            cartStore.clear(cartId);
+            return null;
+        });
+        return ResponseEntity.ok().build();
+    }
 
-        Optional<CartItem> opt = cartItems
-                .findByCartIdAndBookId(cart.getId(), req.getBookId());
+    // Several edits (or a guest cart merged on login) in one request, applied together.
+    // Operations on the same book are folded first, so each line is written at most once.
+    @PostMapping("/batch")
+    public ResponseEntity<?> applyBatch(@RequestBody CartBatchRequest req) {
+        List<CartOperation> ops = req.getOperations() == null ? List.of() : req.getOperations();
+        if (ops.size() > MAX_BATCH_OPERATIONS) {
+            return ResponseEntity.badRequest().body("Too many operations (max " + MAX_BATCH_OPERATIONS + ")");
+        }
 
-        if (opt.isEmpty()) {
-            return ResponseEntity.badRequest().body("Cart item not found");
+        Map<Integer, CartLineEdit> edits = new LinkedHashMap<>();
+        for (CartOperation op : ops) {
+            if (op == null || op.getOp() == null) {
+                return ResponseEntity.badRequest().body("Operation required");
+            }
+            CartLineEdit prev = edits.get(op.getBookId());
+            CartLineEdit next;
+            switch (op.getOp()) {
+                case "add" -> {
+                    int qty = op.getQuantity() <= 0 ? 1 : op.getQuantity();
+                    next = prev == null ? new CartLineEdit(false, qty) : new CartLineEdit(prev.absolute(), prev.quantity() + qty);
+                }
+                case "update" -> next = new CartLineEdit(true, Math.max(0, op.getQuantity()));
+                case "remove" -> next = new CartLineEdit(true, 0);
+                default -> {
+                    return ResponseEntity.badRequest().body("Unknown operation: " + op.getOp());
+                }
+            }
+            edits.put(op.getBookId(), next);
         }
 
-        if (req.getQuantity() <= 0) {
-            cartItems.delete(opt.get());
-        } else {
-            CartItem item = opt.get();
-            item.setQuantity(req.getQuantity());
-            cartItems.save(item);
+        for (Map.Entry<Integer, CartLineEdit> e : edits.entrySet()) {
+            if (e.getValue().quantity() > 0 && !bookCache.exists(e.getKey())) {
+                return ResponseEntity.badRequest().body("Book not found: " + e.getKey());
+            }
         }
 
-        Cart updated = carts.findById(cart.getId()).orElse(cart);
-        return ResponseEntity.ok(toResponse(updated));
-    }
+        int cartId = getOrCreateCartIdForUser(req.getUserId());
 
-    @DeleteMapping("/clear/{userId}")
-    public ResponseEntity<?> clearCart(@PathVariable int userId) {
-        Cart cart = getOrCreateCartForUser(userId);
-        cartItems.deleteByCartId(cart.getId());
-        return ResponseEntity.ok().build();
+        if (stockHolds.isEmpty()) {
+            cartStore.apply(cartId, edits);
+            return ResponseEntity.ok(toResponse(cartId));
+        }
+
+        StockHolds holds = stockHolds.get();
+        ResponseEntity<?> refused = editCart(cartId, () -> {
+            // Holds first, for the quantities the lines will end up with; nothing is written
+            // unless all of them fit
+            Map<Integer, Integer> previous = new LinkedHashMap<>();
+            for (Map.Entry<Integer, CartLineEdit> e : edits.entrySet()) {
+                int bookId = e.getKey();
+                CartLineEdit edit = e.getValue();
+                int qty = edit.absolute() ? edit.quantity() : cartStore.quantity(cartId, bookId) + edit.quantity();
+
+                int before = holds.held(cartId, bookId);
+                if (!holds.hold(cartId, bookId, qty)) {
+                    // Undo the holds this batch already moved
+                    previous.forEach((id, q) -> holds.hold(cartId, id, q));
+                    return notEnoughStock(bookId, qty);
+                }
+                previous.put(bookId, before);
+            }
+
+            Map<Integer, Integer> quantities;
+            try {
+                quantities = cartStore.applyAndGetQuantities(cartId, edits);
+            } catch (RuntimeException e) {
+                previous.forEach((id, q) -> holds.hold(cartId, id, q));
+                throw e;
+            }
+
+            // The holds follow what the lines ended up with. If a line somehow grew past its
+            // hold and the extra stock isn't there, checkout takes the rest the normal way.
+            quantities.forEach((bookId, qty) -> {
+                if (holds.held(cartId, bookId) != qty) {
+                    holds.hold(cartId, bookId, qty);
+                }
+            });
+            return null;
+        });
+        return refused != null ? refused : ResponseEntity.ok(toResponse(cartId));
     }
 }
@@ -4,7 +4,10 @@ import com.bookstore.backend.Book.Book;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "cart_items")
+@Table(
+        name = "cart_items",
+        uniqueConstraints = @UniqueConstraint(name = "uk_cart_items_cart_book", columnNames = {"cart_id", "book_id"})
+)
 public class CartItem {
 
     @Id
@@ -1,11 +1,54 @@
 package com.bookstore.backend.Cart;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface CartItemRepository extends JpaRepository<CartItem, Integer> {
 
     Optional<CartItem> findByCartIdAndBookId(int cartId, int bookId);
     void deleteByCartId(int cartId);
+
+    // The whole cart view in one join; no entities, no lazy book loads
+    @Query("SELECT new com.bookstore.backend.Cart.CartItemResponse(b.id, b.title, b.author, b.price, ci.quantity, b.isbn) " +
+            "FROM CartItem ci JOIN ci.book b WHERE ci.cart.id = :cartId ORDER BY ci.id")
+    List<CartItemResponse> findResponsesByCartId(@Param("cartId") int cartId);
+
+    @Query("SELECT ci.quantity FROM CartItem ci WHERE ci.cart.id = :cartId AND ci.book.id = :bookId")
+    Optional<Integer> findQuantity(@Param("cartId") int cartId, @Param("bookId") int bookId);
+
+    // Insert the line or add to it, in one statement (needs uk_cart_items_cart_book)
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO cart_items (cart_id, book_id, quantity) VALUES (:cartId, :bookId, :qty) " +
+            "ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity)", nativeQuery = true)
+    int addQuantity(@Param("cartId") int cartId, @Param("bookId") int bookId, @Param("qty") int qty);
+
+    // Set the line to qty, creating it if needed
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO cart_items (cart_id, book_id, quantity) VALUES (:cartId, :bookId, :qty) " +
+            "ON DUPLICATE KEY UPDATE quantity = VALUES(quantity)", nativeQuery = true)
+    int putQuantity(@Param("cartId") int cartId, @Param("bookId") int bookId, @Param("qty") int qty);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE CartItem ci SET ci.quantity = :qty WHERE ci.cart.id = :cartId AND ci.book.id = :bookId")
+    int setQuantity(@Param("cartId") int cartId, @Param("bookId") int bookId, @Param("qty") int qty);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM CartItem ci WHERE ci.cart.id = :cartId AND ci.book.id = :bookId")
+    int deleteLine(@Param("cartId") int cartId, @Param("bookId") int bookId);
+
+    // One DELETE statement; unlike deleteByCartId it doesn't load each item first
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM CartItem ci WHERE ci.cart.id = :cartId")
+    int deleteAllInCart(@Param("cartId") int cartId);
 }
@@ -1,5 +1,7 @@
 package com.bookstore.backend.Cart;
 
+import java.math.BigDecimal;
+
 public class CartItemResponse {
     private int bookId;
     private String title;
@@ -18,6 +20,12 @@ public class CartItemResponse {
         this.isbn = isbn;
     }
 
+    // For JPQL constructor expressions, where price comes straight from the column
+    public CartItemResponse(Integer bookId, String title, String author,
+                            BigDecimal price, Integer quantity, String isbn) {
+        this(bookId, title, author, price.doubleValue(), quantity, isbn);
+    }
+
     public int getBookId() { return bookId; }
     public String getTitle() { return title; }
     public String getAuthor() { return author; }
@@ -0,0 +1,4 @@
+package com.bookstore.backend.Cart;
+
+// Net effect of a change on one cart line: set it to quantity (0 removes it), or add quantity
+public record CartLineEdit(boolean absolute, int quantity) {}
@@ -0,0 +1,17 @@
+package com.bookstore.backend.Cart;
+
+// One step of a batch cart edit: "add" (quantity more), "update" (set to quantity; 0 removes) or "remove"
+public class CartOperation {
+    private String op;
+    private int bookId;
+    private int quantity;
+
+    public String getOp() { return op; }
+    public void setOp(String op) { this.op = op; }
+
+    public int getBookId() { return bookId; }
+    public void setBookId(int bookId) { this.bookId = bookId; }
+
+    public int getQuantity() { return quantity; }
+    public void setQuantity(int quantity) { this.quantity = quantity; }
+}
@@ -1,8 +1,23 @@
 package com.bookstore.backend.Cart;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
 import java.util.Optional;
 
 public interface CartRepository extends JpaRepository<Cart, Integer> {
     Optional<Cart> findByUser_Id(int userId);
+
+    @Query("SELECT c.id FROM Cart c WHERE c.user.id = :userId")
+    Optional<Integer> findIdByUserId(@Param("userId") int userId);
+
+    // Creates the user's cart unless it exists (or the user doesn't). Parallel first
+    // requests all succeed: the loser's insert is ignored on the user_id unique key.
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO carts (user_id) SELECT id FROM users WHERE id = :userId", nativeQuery = true)
+    int createIfMissing(@Param("userId") int userId);
 }
@@ -0,0 +1,41 @@
+package com.bookstore.backend.Cart;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Where cart lines are read and written. Picked by bookstore.cart.store:
+ * "database" (default) writes every change to cart_items as it happens,
+ * "write-behind" keeps active carts in memory and flushes them in batches.
+ */
+public interface CartStore {
+
+    List<CartItemResponse> view(int cartId);
+
+    // 0 when the book isn't in the cart
+    int quantity(int cartId, int bookId);
+
+    void add(int cartId, int bookId, int qty);
+
+    // False when the line doesn't exist
+    boolean set(int cartId, int bookId, int qty);
+
+    boolean remove(int cartId, int bookId);
+
+    void clear(int cartId);
+
+    // All edits of one batch request, applied together
+    void apply(int cartId, Map<Integer, CartLineEdit> editsByBook);
+
+    // The same, also returning each edited line's quantity afterwards (0 when the
+    // line is gone), for callers that keep stock holds in step with the lines
+    Map<Integer, Integer> applyAndGetQuantities(int cartId, Map<Integer, CartLineEdit> editsByBook);
+
+    // Runs checkout, which opens its own transaction, with every change to the
+    // user's cart so far in cart_items. Must be called outside any transaction.
+    <T> T duringCheckout(int userId, Supplier<T> checkout);
+
+    // Empties the cart as part of the checkout transaction
+    void checkedOut(int cartId);
+}
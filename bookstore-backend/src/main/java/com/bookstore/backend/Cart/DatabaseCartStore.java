@@ -0,0 +1,92 @@
+package com.bookstore.backend.Cart;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// One statement per change against cart_items; nothing is kept in memory
+@Component
+@ConditionalOnProperty(name = "bookstore.cart.store", havingValue = "database", matchIfMissing = true)
+public class DatabaseCartStore implements CartStore {
+
+    private final CartItemRepository cartItems;
+
+    public DatabaseCartStore(CartItemRepository cartItems) {
+        this.cartItems = cartItems;
+    }
+
+    @Override
+    public List<CartItemResponse> view(int cartId) {
+        return cartItems.findResponsesByCartId(cartId);
+    }
+
+    @Override
+    public int quantity(int cartId, int bookId) {
+        return cartItems.findQuantity(cartId, bookId).orElse(0);
+    }
+
+    @Override
+    public void add(int cartId, int bookId, int qty) {
+        cartItems.addQuantity(cartId, bookId, qty);
+    }
+
+    @Override
+    public boolean set(int cartId, int bookId, int qty) {
+        return cartItems.setQuantity(cartId, bookId, qty) > 0;
+    }
+
+    @Override
+    public boolean remove(int cartId, int bookId) {
+        return cartItems.deleteLine(cartId, bookId) > 0;
+    }
+
+    @Override
+    public void clear(int cartId) {
+        cartItems.deleteAllInCart(cartId);
+    }
+
+    @Override
+    @Transactional
+    public void apply(int cartId, Map<Integer, CartLineEdit> editsByBook) {
+        editsByBook.forEach((bookId, edit) -> write(cartId, bookId, edit));
+    }
+
+    // Only relative edits need a read back, and only this path pays for it
+    @Override
+    @Transactional
+    public Map<Integer, Integer> applyAndGetQuantities(int cartId, Map<Integer, CartLineEdit> editsByBook) {
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        editsByBook.forEach((bookId, edit) -> {
+            write(cartId, bookId, edit);
+            quantities.put(bookId, edit.absolute()
+                    ? edit.quantity()
+                    : cartItems.findQuantity(cartId, bookId).orElse(0));   // our row is locked now
+        });
+        return quantities;
+    }
+
+    private void write(int cartId, int bookId, CartLineEdit edit) {
+        if (!edit.absolute()) {
+            cartItems.addQuantity(cartId, bookId, edit.quantity());
+        } else if (edit.quantity() == 0) {
+            cartItems.deleteLine(cartId, bookId);
+        } else {
+            cartItems.putQuantity(cartId, bookId, edit.quantity());
+        }
+    }
+
+    @Override
+    public <T> T duringCheckout(int userId, Supplier<T> checkout) {
+        return checkout.get();   // every change is already in cart_items
+    }
+
+    @Override
+    public void checkedOut(int cartId) {
+        cartItems.deleteAllInCart(cartId);
+    }
+}
@@ -0,0 +1,406 @@
+package com.bookstore.backend.Cart;
+
+import com.bookstore.backend.Book.BookCache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Carts kept in memory and written to cart_items behind the request. Add,
+ * update, remove and view touch only the in-process copy; a scheduled
+ * flusher writes the lines that changed since the last round, one JDBC
+ * batch per lock stripe, so ten edits to a line become a single upsert.
+ * Checkout flushes the buyer's cart before its transaction starts; the
+ * flusher then leaves that cart alone until the checkout is over, so edits
+ * made meanwhile are written after it instead of being ordered or lost.
+ *
+ * Edits from the last flush interval are lost if the process dies (a clean
+ * shutdown flushes). Past max-carts, clean carts are dropped least recently
+ * used first; dirty ones stay until flushed. Only one app instance may run
+ * in this mode.
+ */
+@Component
+@ConditionalOnProperty(name = "bookstore.cart.store", havingValue = "write-behind")
+public class WriteBehindCartStore implements CartStore {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindCartStore.class);
+
+    private static final int STRIPES = 64;
+
+    private static final String UPSERT = "INSERT INTO cart_items (cart_id, book_id, quantity) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE quantity = VALUES(quantity)";
+    private static final String DELETE = "DELETE FROM cart_items WHERE cart_id = ? AND book_id = ?";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final BookCache bookCache;
+    private final int maxCarts;
+
+    private final Map<Integer, CartState> carts = new ConcurrentHashMap<>();
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    private final Object[] stripes = new Object[STRIPES];
+    private final ReentrantLock[] flushLocks = new ReentrantLock[STRIPES];   // held across the DB write
+
+    // Fields other than lastAccess are guarded by the cart's stripe
+    private static final class CartState {
+        final LinkedHashMap<Integer, Integer> lines;
+        final Set<Integer> changed = new HashSet<>();   // books whose cart_items row is behind
+        boolean flushing;
+        int checkingOut;   // checkouts in flight; the flusher skips the cart meanwhile
+        volatile long lastAccess;
+
+        CartState(LinkedHashMap<Integer, Integer> lines) {
+            this.lines = lines;
+        }
+
+        boolean clean() {
+            return changed.isEmpty() && !flushing && checkingOut == 0;
+        }
+    }
+
+    private record LineWrite(int cartId, int bookId, int qty) {}
+
+    public WriteBehindCartStore(JdbcTemplate jdbc,
+                                PlatformTransactionManager transactionManager,
+                                BookCache bookCache,
+                                MeterRegistry meterRegistry,
+                                @Value("${bookstore.cart.write-behind.max-carts:100000}") int maxCarts) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.bookCache = bookCache;
+        this.maxCarts = maxCarts;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+            flushLocks[i] = new ReentrantLock();
+        }
+
+        Gauge.builder("bookstore.cart.write_behind.carts", carts, Map::size).register(meterRegistry);
+        Gauge.builder("bookstore.cart.write_behind.dirty", dirty, Set::size).register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushDirty();
+    }
+
+    @Override
+    public List<CartItemResponse> view(int cartId) {
+        Map<Integer, Integer> lines = withCart(cartId, s -> new LinkedHashMap<>(s.lines));
+
+        List<CartItemResponse> view = new ArrayList<>(lines.size());
+        lines.forEach((bookId, qty) -> bookCache.findById(bookId).ifPresent(b -> view.add(
+                new CartItemResponse(b.getId(), b.getTitle(), b.getAuthor(), b.getPrice(), qty, b.getIsbn()))));
+        return view;
+    }
+
+    @Override
+    public int quantity(int cartId, int bookId) {
+        return withCart(cartId, s -> s.lines.getOrDefault(bookId, 0));
+    }
+
+    @Override
+    public void add(int cartId, int bookId, int qty) {
+        update(cartId, s -> {
+            s.lines.merge(bookId, qty, Integer::sum);
+            markChanged(cartId, s, bookId);
+        });
+    }
+
+    @Override
+    public boolean set(int cartId, int bookId, int qty) {
+        return withCart(cartId, s -> {
+            if (!s.lines.containsKey(bookId)) {
+                return false;
+            }
+            s.lines.put(bookId, qty);
+            markChanged(cartId, s, bookId);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean remove(int cartId, int bookId) {
+        return withCart(cartId, s -> {
+            if (s.lines.remove(bookId) == null) {
+                return false;
+            }
+            markChanged(cartId, s, bookId);
+            return true;
+        });
+    }
+
+    @Override
+    public void clear(int cartId) {
+        update(cartId, s -> {
+            for (int bookId : s.lines.keySet()) {
+                markChanged(cartId, s, bookId);
+            }
+            s.lines.clear();
+        });
+    }
+
+    @Override
+    public void apply(int cartId, Map<Integer, CartLineEdit> editsByBook) {
+        applyAndGetQuantities(cartId, editsByBook);
+    }
+
+    // In memory the quantities come for free
+    @Override
+    public Map<Integer, Integer> applyAndGetQuantities(int cartId, Map<Integer, CartLineEdit> editsByBook) {
+        return withCart(cartId, s -> {
+            Map<Integer, Integer> quantities = new LinkedHashMap<>();
+            editsByBook.forEach((bookId, edit) -> {
+                int qty = edit.absolute() ? edit.quantity() : s.lines.getOrDefault(bookId, 0) + edit.quantity();
+                if (qty > 0) {
+                    s.lines.put(bookId, qty);
+                } else {
+                    s.lines.remove(bookId);
+                }
+                markChanged(cartId, s, bookId);
+                quantities.put(bookId, Math.max(qty, 0));
+            });
+            return quantities;
+        });
+    }
+
+    // The flush commits before checkout's transaction starts, so its snapshot includes it
+    @Override
+    public <T> T duringCheckout(int userId, Supplier<T> checkout) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Cart flush for checkout must run before the checkout transaction");
+        }
+
+        List<Integer> found = jdbc.query("SELECT id FROM carts WHERE user_id = ?", (rs, i) -> rs.getInt(1), userId);
+        if (found.isEmpty()) {
+            return checkout.get();
+        }
+
+        int cartId = found.get(0);
+        int stripe = stripeIndex(cartId);
+        CartState s = withCart(cartId, c -> {
+            c.checkingOut++;
+            return c;
+        });
+        try {
+            // Through the flush lock: a scheduled round may be writing this cart right now
+            flush(stripe, List.of(cartId), true);
+            return checkout.get();
+        } finally {
+            synchronized (stripes[stripe]) {
+                s.checkingOut--;
+            }
+        }
+    }
+
+    @Override
+    public void checkedOut(int cartId) {
+        jdbc.update("DELETE FROM cart_items WHERE cart_id = ?", cartId);
+
+        // Once the order is in, drop the lines it bought. Lines edited since the checkout's
+        // flush weren't in it; they stay, still marked, and the next round writes them back.
+        // A rollback leaves the cart as it was.
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                synchronized (stripe(cartId)) {
+                    CartState s = carts.get(cartId);
+                    if (s != null) {
+                        s.lines.keySet().retainAll(s.changed);
+                    }
+                }
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${bookstore.cart.write-behind.flush-interval-ms:500}")
+    public void flushDirty() {
+        List<List<Integer>> byStripe = new ArrayList<>(STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            byStripe.add(new ArrayList<>());
+        }
+        for (int cartId : dirty) {
+            byStripe.get(stripeIndex(cartId)).add(cartId);
+        }
+
+        // A failed stripe stays marked for the next round; the others still go out
+        for (int i = 0; i < STRIPES; i++) {
+            if (!byStripe.get(i).isEmpty()) {
+                try {
+                    flush(i, byStripe.get(i), false);
+                } catch (RuntimeException e) {
+                    log.warn("Cart flush failed for {} cart(s) in stripe {}; retrying next round",
+                            byStripe.get(i).size(), i, e);
+                }
+            }
+        }
+        evictIfOverCapacity();
+    }
+
+    // Snapshot the changed lines under the stripe, write them outside it.
+    // Carts with a checkout in flight are left dirty unless this is that checkout's flush.
+    private void flush(int stripe, List<Integer> cartIds, boolean forCheckout) {
+        ReentrantLock flushLock = flushLocks[stripe];
+        flushLock.lock();
+        try {
+            List<LineWrite> writes = new ArrayList<>();
+            List<CartState> flushing = new ArrayList<>();
+            synchronized (stripes[stripe]) {
+                for (int cartId : cartIds) {
+                    CartState s = carts.get(cartId);
+                    if (s != null && s.checkingOut > 0 && !forCheckout) continue;
+                    dirty.remove(cartId);
+                    if (s == null || s.changed.isEmpty()) continue;
+
+                    for (int bookId : s.changed) {
+                        writes.add(new LineWrite(cartId, bookId, s.lines.getOrDefault(bookId, 0)));
+                    }
+                    s.changed.clear();
+                    s.flushing = true;
+                    flushing.add(s);
+                }
+            }
+            if (writes.isEmpty()) {
+                return;
+            }
+
+            try {
+                write(writes);
+            } catch (RuntimeException e) {
+                // Mark them again so the next round retries
+                synchronized (stripes[stripe]) {
+                    for (LineWrite w : writes) {
+                        CartState s = carts.get(w.cartId());
+                        if (s != null) {
+                            markChanged(w.cartId(), s, w.bookId());
+                        }
+                    }
+                }
+                throw e;
+            } finally {
+                synchronized (stripes[stripe]) {
+                    flushing.forEach(s -> s.flushing = false);
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void write(List<LineWrite> writes) {
+        // Same row order in every flush, so concurrent batches can't deadlock
+        writes.sort(Comparator.comparingInt(LineWrite::cartId).thenComparingInt(LineWrite::bookId));
+
+        List<LineWrite> upserts = new ArrayList<>();
+        List<LineWrite> deletes = new ArrayList<>();
+        for (LineWrite w : writes) {
+            (w.qty() > 0 ? upserts : deletes).add(w);
+        }
+
+        tx.executeWithoutResult(status -> {
+            if (!upserts.isEmpty()) {
+                jdbc.batchUpdate(UPSERT, upserts, upserts.size(), (ps, w) -> {
+                    ps.setInt(1, w.cartId());
+                    ps.setInt(2, w.bookId());
+                    ps.setInt(3, w.qty());
+                });
+            }
+            if (!deletes.isEmpty()) {
+                jdbc.batchUpdate(DELETE, deletes, deletes.size(), (ps, w) -> {
+                    ps.setInt(1, w.cartId());
+                    ps.setInt(2, w.bookId());
+                });
+            }
+        });
+    }
+
+    private void evictIfOverCapacity() {
+        int excess = carts.size() - maxCarts;
+        if (excess <= 0) {
+            return;
+        }
+
+        // Copy the access times first; they keep moving while we sort
+        List<long[]> byAge = new ArrayList<>(carts.size());
+        carts.forEach((cartId, s) -> byAge.add(new long[] { s.lastAccess, cartId }));
+        byAge.sort(Comparator.comparingLong(a -> a[0]));
+
+        for (long[] entry : byAge) {
+            if (excess <= 0) break;
+            int cartId = (int) entry[1];
+            synchronized (stripe(cartId)) {
+                CartState s = carts.get(cartId);
+                if (s != null && s.clean()) {
+                    carts.remove(cartId);
+                    excess--;
+                }
+            }
+        }
+    }
+
+    private void update(int cartId, Consumer<CartState> action) {
+        withCart(cartId, s -> {
+            action.accept(s);
+            return null;
+        });
+    }
+
+    private <T> T withCart(int cartId, Function<CartState, T> action) {
+        while (true) {
+            CartState s = carts.get(cartId);
+            if (s == null) {
+                // Loaded outside the stripe so a slow query doesn't block other carts
+                CartState fresh = new CartState(load(cartId));
+                CartState raced = carts.putIfAbsent(cartId, fresh);
+                s = raced != null ? raced : fresh;
+            }
+            synchronized (stripe(cartId)) {
+                if (carts.get(cartId) == s) {   // not evicted or replaced meanwhile
+                    s.lastAccess = System.nanoTime();
+                    return action.apply(s);
+                }
+            }
+        }
+    }
+
+    // Only clean carts are evicted, so cart_items is current when one is loaded again
+    private LinkedHashMap<Integer, Integer> load(int cartId) {
+        LinkedHashMap<Integer, Integer> lines = new LinkedHashMap<>();
+        jdbc.query("SELECT book_id, quantity FROM cart_items WHERE cart_id = ? ORDER BY id", rs -> {
+            lines.put(rs.getInt(1), rs.getInt(2));
+        }, cartId);
+        return lines;
+    }
+
+    private void markChanged(int cartId, CartState s, int bookId) {
+        s.changed.add(bookId);
+        dirty.add(cartId);
+    }
+
+    private Object stripe(int cartId) {
+        return stripes[stripeIndex(cartId)];
+    }
+
+    private static int stripeIndex(int cartId) {
+        return Integer.hashCode(cartId) & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,31 @@
+package com.bookstore.backend.Inventory;
+
+import com.bookstore.backend.Book.BookRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+// Conditional UPDATEs against books.stock_qty; the row locks are the arbiter
+@Component
+@ConditionalOnProperty(name = "bookstore.inventory.mode", havingValue = "database", matchIfMissing = true)
+public class DatabaseInventory implements Inventory {
+
+    private final BookRepository books;
+
+    public DatabaseInventory(BookRepository books) {
+        this.books = books;
+    }
+
+    @Override
+    public List<Integer> take(Map<Integer, Integer> quantityByBook) {
+        return books.decrementStock(quantityByBook);
+    }
+
+    @Override
+    public int available(int bookId) {
+        Integer qty = books.findStockQtyById(bookId);
+        return qty == null ? 0 : qty;
+    }
+}
@@ -0,0 +1,19 @@
+package com.bookstore.backend.Inventory;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stock decisions for checkout. Picked by bookstore.inventory.mode:
+ * "database" (default) decrements books.stock_qty directly, "memory" keeps
+ * the counts in process and writes them back behind the request.
+ */
+public interface Inventory {
+
+    // Takes the quantities as part of the caller's transaction. Returns the ids
+    // that fell short (nothing is taken then); empty means all lines were taken.
+    // A rollback of the caller's transaction gives the stock back.
+    List<Integer> take(Map<Integer, Integer> quantityByBook);
+
+    int available(int bookId);
+}
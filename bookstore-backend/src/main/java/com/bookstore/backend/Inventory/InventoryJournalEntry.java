@@ -0,0 +1,30 @@
+package com.bookstore.backend.Inventory;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// A committed stock change not yet applied to books.stock_qty (memory mode).
+// Rows are written with JDBC; the entity is here for the schema.
+@Entity
+@Table(name = "inventory_journal")
+public class InventoryJournalEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Column(name = "book_id", nullable = false)
+    private int bookId;
+
+    @Column(nullable = false)
+    private int delta;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public long getId() { return id; }
+    public int getBookId() { return bookId; }
+    public int getDelta() { return delta; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+}
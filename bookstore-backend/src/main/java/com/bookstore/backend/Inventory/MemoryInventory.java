@@ -0,0 +1,230 @@
+package com.bookstore.backend.Inventory;
+
+import com.bookstore.backend.Book.BookChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stock counts for flash sales. take() decides with a CAS per
+ * book, so buyers never wait on a books row lock; the decision is made
+ * durable by an inventory_journal row written in the checkout transaction.
+ * A scheduled applier folds committed journal rows into books.stock_qty in
+ * batches and deletes them.
+ *
+ * Counts are loaded as stock_qty plus any unapplied journal deltas, so a
+ * restart (or a book first seen after startup) sees the right number even
+ * before the journal is drained. Only one app instance may run in this mode.
+ */
+@Component
+@ConditionalOnProperty(name = "bookstore.inventory.mode", havingValue = "memory")
+public class MemoryInventory implements Inventory {
+
+    private static final String COUNTS = "SELECT b.id, b.stock_qty + COALESCE(j.pending, 0) FROM books b " +
+            "LEFT JOIN (SELECT book_id, SUM(delta) AS pending FROM inventory_journal GROUP BY book_id) j " +
+            "ON j.book_id = b.id";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final ApplicationEventPublisher events;
+    private final int applyBatchSize;
+
+    private final Map<Integer, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+    private record Taken(AtomicInteger count, int qty) {}
+
+    public MemoryInventory(JdbcTemplate jdbc,
+                           PlatformTransactionManager transactionManager,
+                           ApplicationEventPublisher events,
+                           @Value("${bookstore.inventory.apply-batch-size:500}") int applyBatchSize) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.events = events;
+        this.applyBatchSize = applyBatchSize;
+    }
+
+    // Recovery: fold whatever the last run left in the journal, then warm every count
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        applyJournal();
+        jdbc.query(COUNTS, rs -> {
+            counts.putIfAbsent(rs.getInt(1), new AtomicInteger(rs.getInt(2)));
+        });
+    }
+
+    @Override
+    public List<Integer> take(Map<Integer, Integer> quantityByBook) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Inventory.take needs an active transaction");
+        }
+
+        if (quantityByBook.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Integer, Integer> lines = new TreeMap<>(quantityByBook);
+        List<Taken> taken = new ArrayList<>();
+        List<Integer> shortBooks = new ArrayList<>();
+
+        for (Map.Entry<Integer, Integer> line : lines.entrySet()) {
+            AtomicInteger count = counter(line.getKey());
+            if (tryTake(count, line.getValue())) {
+                taken.add(new Taken(count, line.getValue()));
+            } else {
+                shortBooks.add(line.getKey());
+            }
+        }
+
+        if (!shortBooks.isEmpty()) {
+            release(taken);
+            return shortBooks;
+        }
+
+        // Give it back if the checkout doesn't commit, whatever the reason
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    release(taken);
+                }
+            }
+        });
+        writeJournal(lines);
+        return List.of();
+    }
+
+    // Checkout of stock that StockHolds already took off the counters: no recheck,
+    // just the journal rows. On rollback the stock stays set aside; StockHolds puts
+    // the holds back.
+    public void commitHeld(Map<Integer, Integer> quantityByBook) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Inventory.commitHeld needs an active transaction");
+        }
+        if (!quantityByBook.isEmpty()) {
+            writeJournal(new TreeMap<>(quantityByBook));
+        }
+    }
+
+    // Outside any transaction: sets stock aside for a cart hold
+    public boolean hold(int bookId, int qty) {
+        return tryTake(counter(bookId), qty);
+    }
+
+    public void unhold(int bookId, int qty) {
+        counter(bookId).addAndGet(qty);
+    }
+
+    private void writeJournal(Map<Integer, Integer> lines) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Map.Entry<Integer, Integer>> rows = new ArrayList<>(lines.entrySet());
+        jdbc.batchUpdate("INSERT INTO inventory_journal (book_id, delta, created_at) VALUES (?, ?, ?)",
+                rows, rows.size(), (ps, row) -> {
+                    ps.setInt(1, row.getKey());
+                    ps.setInt(2, -row.getValue());
+                    ps.setObject(3, now);
+                });
+    }
+
+    @Override
+    public int available(int bookId) {
+        return counter(bookId).get();
+    }
+
+    // Only a deleted book loses its count. Entity saves never write stock_qty (Book is
+    // @DynamicUpdate and stock moves only through the journal), and a reload would miss
+    // uncommitted takes and count held stock as free, so edits leave the count alone.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.removed()) {
+            counts.remove(event.bookId());
+        }
+    }
+
+    // Synchronized: recovery and the schedule must never fold the same rows twice
+    @Scheduled(fixedDelayString = "${bookstore.inventory.apply-interval-ms:200}")
+    public synchronized void applyJournal() {
+        while (applyBatch() == applyBatchSize) {
+            // keep going while full batches come back
+        }
+    }
+
+    private int applyBatch() {
+        Integer applied = tx.execute(status -> {
+            List<long[]> rows = jdbc.query(
+                    "SELECT id, book_id, delta FROM inventory_journal ORDER BY id LIMIT ?",
+                    (rs, i) -> new long[] { rs.getLong(1), rs.getInt(2), rs.getInt(3) },
+                    applyBatchSize);
+            if (rows.isEmpty()) {
+                return 0;
+            }
+
+            Map<Integer, Integer> deltaByBook = new TreeMap<>();
+            for (long[] row : rows) {
+                deltaByBook.merge((int) row[1], (int) row[2], Integer::sum);
+            }
+
+            List<Map.Entry<Integer, Integer>> updates = new ArrayList<>(deltaByBook.entrySet());
+            jdbc.batchUpdate("UPDATE books SET stock_qty = stock_qty + ? WHERE id = ?",
+                    updates, updates.size(), (ps, u) -> {
+                        ps.setInt(1, u.getValue());
+                        ps.setInt(2, u.getKey());
+                    });
+            jdbc.batchUpdate("DELETE FROM inventory_journal WHERE id = ?",
+                    rows, rows.size(), (ps, row) -> ps.setLong(1, row[0]));
+
+            // After commit: caches and ETags pick up the new stock_qty
+            for (Integer bookId : deltaByBook.keySet()) {
+                events.publishEvent(BookChangedEvent.counters(bookId));
+            }
+            return rows.size();
+        });
+        return applied == null ? 0 : applied;
+    }
+
+    private AtomicInteger counter(int bookId) {
+        AtomicInteger c = counts.get(bookId);
+        if (c != null) {
+            return c;
+        }
+
+        // Loaded outside the map so a slow query doesn't block other books
+        List<Integer> loaded = jdbc.query(COUNTS + " WHERE b.id = ?", (rs, i) -> rs.getInt(2), bookId);
+        AtomicInteger fresh = new AtomicInteger(loaded.isEmpty() ? 0 : loaded.get(0));
+        AtomicInteger raced = counts.putIfAbsent(bookId, fresh);
+        return raced != null ? raced : fresh;
+    }
+
+    private static boolean tryTake(AtomicInteger count, int qty) {
+        while (true) {
+            int current = count.get();
+            if (current < qty) {
+                return false;
+            }
+            if (count.compareAndSet(current, current - qty)) {
+                return true;
+            }
+        }
+    }
+
+    // Back into the counters they came from, even if a book's count was reloaded meanwhile
+    private static void release(List<Taken> taken) {
+        for (Taken t : taken) {
+            t.count().addAndGet(t.qty());
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.bookstore.backend.Inventory;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Time-limited stock holds for cart lines. Adding or changing a line sets
+ * its full quantity aside in MemoryInventory for ttl; checkout turns the
+ * held part into a sale without checking it again. The holds a checkout
+ * uses are only consumed when it commits; a rollback puts them back.
+ *
+ * Every hold sits in a DelayQueue; a reaper thread wakes when the earliest
+ * one expires and drains everything that is due in one go. A line that was
+ * re-held or checked out in the meantime has a newer (or no) entry in the
+ * map, so its stale queue entry is skipped.
+ *
+ * Callers that derive a hold from the cart's current quantity run the read,
+ * the hold and the cart write inside forCart, so two requests on the same
+ * cart can't interleave and leave the hold out of step with the line.
+ *
+ * Needs bookstore.inventory.mode=memory: holds live in process, so they
+ * vanish on restart along with the counters they were taken from.
+ */
+@Component
+@ConditionalOnProperty(name = "bookstore.cart.holds.enabled", havingValue = "true")
+public class StockHolds {
+
+    private static final int REAP_BATCH = 1_000;
+    private static final int STRIPES = 64;
+
+    private final MemoryInventory inventory;
+    private final long ttlNanos;
+
+    private final Map<Long, Hold> holds = new ConcurrentHashMap<>();
+    private final DelayQueue<Hold> expiry = new DelayQueue<>();
+    private final Object[] stripes = new Object[STRIPES];
+    private final Object[] cartLocks = new Object[STRIPES];   // always taken before a stripe, never inside one
+    private final Thread reaper;
+
+    private record Used(Hold hold, int covered) {}
+
+    private static final class Hold implements Delayed {
+        final long key;
+        final int bookId;
+        final int qty;
+        final long expiresAt;
+
+        Hold(long key, int bookId, int qty, long expiresAt) {
+            this.key = key;
+            this.bookId = bookId;
+            this.qty = qty;
+            this.expiresAt = expiresAt;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiresAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiresAt, ((Hold) other).expiresAt);
+        }
+    }
+
+    public StockHolds(MemoryInventory inventory,
+                      @Value("${bookstore.cart.holds.ttl:15m}") Duration ttl) {
+        this.inventory = inventory;
+        this.ttlNanos = ttl.toNanos();
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+            cartLocks[i] = new Object();
+        }
+        this.reaper = Thread.ofPlatform().daemon().name("stock-hold-reaper").start(this::reapLoop);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reaper.interrupt();
+    }
+
+    // Makes the hold for this cart line exactly qty (0 drops it) and restarts its clock.
+    // False when the extra stock isn't there; the previous hold is kept then.
+    public boolean hold(int cartId, int bookId, int qty) {
+        long key = key(cartId, bookId);
+        synchronized (stripe(key)) {
+            Hold current = holds.get(key);
+            int delta = qty - (current == null ? 0 : current.qty);
+
+            if (delta > 0 && !inventory.hold(bookId, delta)) {
+                return false;
+            }
+            if (delta < 0) {
+                inventory.unhold(bookId, -delta);
+            }
+
+            if (qty <= 0) {
+                holds.remove(key);
+            } else {
+                Hold next = new Hold(key, bookId, qty, System.nanoTime() + ttlNanos);
+                holds.put(key, next);
+                expiry.add(next);
+            }
+            return true;
+        }
+    }
+
+    // Runs action with every other forCart call for this cart kept out
+    public <T> T forCart(int cartId, Supplier<T> action) {
+        synchronized (cartLocks[cartId & (STRIPES - 1)]) {
+            return action.get();
+        }
+    }
+
+    public int held(int cartId, int bookId) {
+        Hold h = holds.get(key(cartId, bookId));
+        return h == null ? 0 : h.qty;
+    }
+
+    public void release(int cartId, int bookId) {
+        hold(cartId, bookId, 0);
+    }
+
+    // Checkout: sells whatever is held for these lines (in the caller's transaction)
+    // and returns the part that still has to be taken the normal way
+    public Map<Integer, Integer> checkout(int cartId, Map<Integer, Integer> quantityByBook) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("StockHolds.checkout needs an active transaction");
+        }
+
+        Map<Integer, Integer> held = new HashMap<>();
+        Map<Integer, Integer> remaining = new HashMap<>();
+        List<Used> used = new ArrayList<>();
+
+        for (Map.Entry<Integer, Integer> line : quantityByBook.entrySet()) {
+            int bookId = line.getKey();
+            int wanted = line.getValue();
+            long key = key(cartId, bookId);
+
+            int covered = 0;
+            synchronized (stripe(key)) {
+                // Out of the map so the reaper can't expire it while the checkout runs
+                Hold h = holds.remove(key);
+                if (h != null) {
+                    covered = Math.min(h.qty, wanted);
+                    used.add(new Used(h, covered));
+                }
+            }
+
+            if (covered > 0) held.put(bookId, covered);
+            if (wanted > covered) remaining.put(bookId, wanted - covered);
+        }
+
+        if (!used.isEmpty()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    for (Used u : used) {
+                        if (status != STATUS_COMMITTED) {
+                            restore(u.hold());
+                        } else if (u.hold().qty > u.covered()) {
+                            inventory.unhold(u.hold().bookId, u.hold().qty - u.covered());   // held more than was bought
+                        }
+                    }
+                }
+            });
+        }
+
+        inventory.commitHeld(held);
+        return remaining;
+    }
+
+    // A checkout that didn't commit: the hold comes back, unless the line was held again meanwhile
+    private void restore(Hold h) {
+        synchronized (stripe(h.key)) {
+            if (holds.containsKey(h.key)) {
+                inventory.unhold(h.bookId, h.qty);   // the newer hold has its own stock
+            } else {
+                Hold back = new Hold(h.key, h.bookId, h.qty, h.expiresAt);
+                holds.put(h.key, back);
+                expiry.add(back);
+            }
+        }
+    }
+
+    public int size() {
+        return holds.size();
+    }
+
+    private void reapLoop() {
+        List<Hold> due = new ArrayList<>(REAP_BATCH);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                due.add(expiry.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            expiry.drainTo(due, REAP_BATCH - 1);   // only drains entries that are already due
+
+            for (Hold h : due) {
+                synchronized (stripe(h.key)) {
+                    if (holds.remove(h.key, h)) {
+                        inventory.unhold(h.bookId, h.qty);
+                    }
+                }
+            }
+            due.clear();
+        }
+    }
+
+    private Object stripe(long key) {
+        return stripes[(int) (Long.hashCode(key) & (STRIPES - 1))];
+    }
+
+    private static long key(int cartId, int bookId) {
+        return ((long) cartId << 32) | (bookId & 0xffffffffL);
+    }
+}
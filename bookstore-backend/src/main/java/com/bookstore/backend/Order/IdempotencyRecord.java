@@ -0,0 +1,44 @@
+package com.bookstore.backend.Order;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// A checkout's Idempotency-Key and the response it produced, kept for replay
+@Entity
+@Table(name = "checkout_idempotency", indexes = {
+        @Index(name = "idx_checkout_idempotency_created_at", columnList = "created_at")
+})
+public class IdempotencyRecord {
+
+    @Id
+    @Column(name = "idempotency_key", length = 64)
+    private String idempotencyKey;
+
+    @Column(name = "user_id", nullable = false)
+    private int userId;
+
+    @Column(name = "order_id")
+    private Integer orderId;
+
+    @Column(name = "order_number", length = 30)
+    private String orderNumber;
+
+    @Column(precision = 10, scale = 2)
+    private BigDecimal total;
+
+    @Column(length = 200)
+    private String message;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public int getUserId() { return userId; }
+    public Integer getOrderId() { return orderId; }
+    public String getOrderNumber() { return orderNumber; }
+    public BigDecimal getTotal() { return total; }
+    public String getMessage() { return message; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+}
@@ -0,0 +1,29 @@
+package com.bookstore.backend.Order;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+// Drops idempotency keys once clients can no longer be retrying them
+@Component
+public class IdempotencyRecordCleanup {
+
+    private final IdempotencyRecordRepository records;
+    private final Duration ttl;
+
+    public IdempotencyRecordCleanup(IdempotencyRecordRepository records,
+                                    @Value("${bookstore.checkout.idempotency.ttl:24h}") Duration ttl) {
+        this.records = records;
+        this.ttl = ttl;
+    }
+
+    @Scheduled(fixedDelayString = "${bookstore.checkout.idempotency.cleanup-interval-ms:3600000}")
+    @Transactional
+    public void deleteExpired() {
+        records.deleteCreatedBefore(LocalDateTime.now().minus(ttl));
+    }
+}
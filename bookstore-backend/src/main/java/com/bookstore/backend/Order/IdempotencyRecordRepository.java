@@ -0,0 +1,32 @@
+package com.bookstore.backend.Order;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // Plain INSERT so a concurrent duplicate waits on the key and then fails
+    // with a duplicate-key error, instead of merging into our row
+    @Modifying
+    @Query(value = "INSERT INTO checkout_idempotency (idempotency_key, user_id, created_at) " +
+            "VALUES (:key, :userId, :createdAt)", nativeQuery = true)
+    int claim(@Param("key") String key, @Param("userId") int userId, @Param("createdAt") LocalDateTime createdAt);
+
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.orderId = :orderId, r.orderNumber = :orderNumber, " +
+            "r.total = :total, r.message = :message WHERE r.idempotencyKey = :key")
+    int complete(@Param("key") String key,
+                 @Param("orderId") int orderId,
+                 @Param("orderNumber") String orderNumber,
+                 @Param("total") BigDecimal total,
+                 @Param("message") String message);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
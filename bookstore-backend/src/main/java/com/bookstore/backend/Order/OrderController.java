@@ -4,16 +4,28 @@ import com.bookstore.backend.Book.Book;
 import com.bookstore.backend.Book.BookRepository;
 import com.bookstore.backend.Cart.Cart;
 import com.bookstore.backend.Cart.CartItem;
-import com.bookstore.backend.Cart.CartItemRepository;
 import com.bookstore.backend.Cart.CartRepository;
+import com.bookstore.backend.Cart.CartStore;
+import com.bookstore.backend.Inventory.Inventory;
+import com.bookstore.backend.Inventory.StockHolds;
 import com.bookstore.backend.User.User;
 import com.bookstore.backend.User.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.ResponseEntity;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.List;
 import java.util.UUID;
@@ -26,31 +38,70 @@ public class OrderController {
     private final OrderRepository orders;
     private final OrderItemRepository orderItems;
     private final CartRepository carts;
-    private final CartItemRepository cartItems;
+    private final CartStore cartStore;
     private final UserRepository users;
     private final BookRepository books;
+    private final IdempotencyRecordRepository idempotency;
+    private final Inventory inventory;
+    private final Optional<StockHolds> stockHolds;
+    private final OrderHistoryCache historyCache;
+    private final ApplicationEventPublisher events;
+    private final TransactionTemplate tx;
+
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+    private static final int MAX_HISTORY_PAGE_SIZE = 50;
 
     public OrderController(
             OrderRepository orders,
             OrderItemRepository orderItems,
             CartRepository carts,
-            CartItemRepository cartItems,
+            CartStore cartStore,
             UserRepository users,
-            BookRepository books
+            BookRepository books,
+            IdempotencyRecordRepository idempotency,
+            Inventory inventory,
+            Optional<StockHolds> stockHolds,
+            OrderHistoryCache historyCache,
+            ApplicationEventPublisher events,
+            PlatformTransactionManager transactionManager
     ) {
         this.orders = orders;
         this.orderItems = orderItems;
         this.carts = carts;
-        this.cartItems = cartItems;
+        this.cartStore = cartStore;
         this.users = users;
         this.books = books;
+        this.idempotency = idempotency;
+        this.inventory = inventory;
+        this.stockHolds = stockHolds;
+        this.historyCache = historyCache;
+        this.events = events;
+        this.tx = new TransactionTemplate(transactionManager);
     }
 
 
 
+    // Not transactional itself: a write-behind cart is flushed first, in a transaction of
+    // its own, and the order is placed in a second one that starts after that commits
     @PostMapping("/checkout")
-    @Transactional
-    public ResponseEntity<?> checkout(@RequestBody CheckoutRequest req) {
+    public ResponseEntity<?> checkout(@RequestBody CheckoutRequest req,
+                                      @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return cartStore.duringCheckout(req.getUserId(),
+                () -> tx.execute(status -> placeOrder(req, idempotencyKey, status)));
+    }
+
+    private ResponseEntity<?> placeOrder(CheckoutRequest req, String idempotencyKey, TransactionStatus status) {
+
+        // A retry of a checkout that already went through gets the original answer back
+        if (idempotencyKey != null) {
+            if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+                return ResponseEntity.badRequest().body("Invalid Idempotency-Key");
+            }
+            Optional<IdempotencyRecord> prior = idempotency.findById(idempotencyKey);
+            if (prior.isPresent()) {
+                return replay(prior.get(), req.getUserId());
+            }
+        }
 
         // Validate user
         Optional<User> userOpt = users.findById(req.getUserId());
@@ -67,19 +118,49 @@ public class OrderController {
         User user = userOpt.get();
         Cart cart = cartOpt.get();
 
-        for (CartItem ci : cart.getItems()) {
-            Book book = ci.getBook();
-            int requested = ci.getQuantity();
-            int available = book.getStockQty();
-
-            if (available < requested) {
+        // Claim the key in this transaction: a concurrent duplicate blocks here
+        // and then fails (409), and a rollback below releases the key again
+        if (idempotencyKey != null) {
+            try {
+                idempotency.claim(idempotencyKey, user.getId(), LocalDateTime.now());
+            } catch (DataIntegrityViolationException e) {
+                if (!isDuplicateKey(e)) {
+                    throw e;
+                }
+                status.setRollbackOnly();
                 return ResponseEntity.status(409)
-                        .body("Not enough stock for \"" + book.getTitle()
-                                + "\". In stock: " + available
-                                + ", requested: " + requested);
+                        .body("Checkout with this Idempotency-Key is already in progress; retry to get its result");
             }
         }
 
+        // Take the stock first; the check and the decrement are one step per line
+        Map<Integer, Integer> quantityByBook = new HashMap<>();
+        for (CartItem ci : cart.getItems()) {
+            quantityByBook.merge(ci.getBook().getId(), ci.getQuantity(), Integer::sum);
+        }
+
+        // Lines held since they were added to the cart are sold as-is; the rest is taken now
+        Map<Integer, Integer> toTake = stockHolds
+                .map(holds -> holds.checkout(cart.getId(), quantityByBook))
+                .orElse(quantityByBook);
+        List<Integer> shortBooks = inventory.take(toTake);
+        if (!shortBooks.isEmpty()) {
+            status.setRollbackOnly();
+
+            int bookId = shortBooks.get(0);
+            Book book = cart.getItems().stream()
+                    .map(CartItem::getBook)
+                    .filter(b -> b.getId() == bookId)
+                    .findFirst()
+                    .orElseThrow();
+            int available = inventory.available(bookId);
+
+            return ResponseEntity.status(409)
+                    .body("Not enough stock for \"" + book.getTitle()
+                            + "\". In stock: " + available
+                            + ", requested: " + quantityByBook.get(bookId));
+        }
+
         BigDecimal subtotal = cart.getItems().stream()
                 .map(item -> item.getBook().getPrice()
                         .multiply(BigDecimal.valueOf(item.getQuantity())))
@@ -116,11 +197,9 @@ public class OrderController {
 
         orders.save(order);
 
+        List<OrderItem> lines = new ArrayList<>(cart.getItems().size());
         for (CartItem ci : cart.getItems()) {
             Book book = ci.getBook();
-            int newStock = book.getStockQty() - ci.getQuantity();
-            book.setStockQty(newStock);
-            books.save(book);   // update stock
 
             OrderItem oi = new OrderItem();
             oi.setOrder(order);
@@ -130,13 +209,14 @@ public class OrderController {
             oi.setGrandTotal(
                     book.getPrice().multiply(BigDecimal.valueOf(ci.getQuantity()))
             );
-
-            orderItems.save(oi);
+            lines.add(oi);
         }
+        orderItems.insertAll(order.getId(), lines);
 
-        cartItems.deleteAll(cart.getItems());
-        cart.getItems().clear();
-        carts.save(cart);
+        // Bulk delete; the loaded cart isn't touched again in this transaction
+        cartStore.checkedOut(cart.getId());
+
+        events.publishEvent(new OrderPlacedEvent(user.getId(), order.getId()));
 
         CheckoutResponse resp = new CheckoutResponse(
                 order.getId(),
@@ -145,15 +225,51 @@ public class OrderController {
                 "Order placed successfully!"
         );
 
+        if (idempotencyKey != null) {
+            idempotency.complete(idempotencyKey, resp.getOrderId(), resp.getOrderNumber(),
+                    resp.getTotal(), resp.getMessage());
+        }
+
         return ResponseEntity.ok(resp);
     }
 
+    // By error code, not message text: 1062 is MySQL/MariaDB's duplicate-entry error
+    private static boolean isDuplicateKey(DataIntegrityViolationException e) {
+        if (e instanceof DuplicateKeyException) {
+            return true;
+        }
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql && sql.getErrorCode() == 1062) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ResponseEntity<?> replay(IdempotencyRecord prior, int userId) {
+        if (prior.getUserId() != userId) {
+            return ResponseEntity.status(422).body("Idempotency-Key was already used by another checkout");
+        }
+        if (prior.getOrderId() == null) {
+            return ResponseEntity.status(409).body("Checkout with this Idempotency-Key is still in progress");
+        }
+
+        return ResponseEntity.ok()
+                .header("Idempotent-Replayed", "true")
+                .body(new CheckoutResponse(prior.getOrderId(), prior.getOrderNumber(),
+                        prior.getTotal(), prior.getMessage()));
+    }
+
     private String generateOrderNumber() {
         String random = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
         return "ORD-" + random;
     }
     @GetMapping("/history/{userId}")
     public ResponseEntity<?> getOrderHistory(@PathVariable int userId) {
+        return ResponseEntity.ok(historyCache.all(userId, () -> loadOrderHistory(userId)));
+    }
+
+    private List<OrderHistoryResponse> loadOrderHistory(int userId) {
 
         List<Order> userOrders = orders.findByUserIdOrderByPlacedAtDesc(userId);
 
@@ -177,7 +293,58 @@ public class OrderController {
             );
         }).toList();
 
-        return ResponseEntity.ok(response);
+        return response;
     }
 
+    // Keyset-paged history, newest first: one query per page however many orders the user has
+    @GetMapping("/history/{userId}/page")
+    public ResponseEntity<?> getOrderHistoryPage(@PathVariable int userId,
+                                                 @RequestParam(required = false) String cursor,
+                                                 @RequestParam(defaultValue = "10") int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_HISTORY_PAGE_SIZE));
+
+        OrderCursor after;
+        try {
+            after = cursor == null || cursor.isBlank() ? null : OrderCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+
+        if (after == null) {
+            return ResponseEntity.ok(historyCache.firstPage(userId, pageSize, () -> loadHistoryPage(userId, null, pageSize)));
+        }
+        return ResponseEntity.ok(loadHistoryPage(userId, after, pageSize));
+    }
+
+    private OrderHistoryPage loadHistoryPage(int userId, OrderCursor after, int pageSize) {
+        // One extra order tells us if there is a next page
+        List<OrderHistoryRow> rows = after == null
+                ? orders.historyFirstPage(userId, pageSize + 1)
+                : orders.historyPageAfter(userId, after.placedAt(), after.id(), pageSize + 1);
+
+        Map<Integer, OrderHistoryResponse> byOrder = new LinkedHashMap<>();
+        for (OrderHistoryRow row : rows) {
+            OrderHistoryResponse order = byOrder.computeIfAbsent(row.getOrderId(), id -> new OrderHistoryResponse(
+                    id, row.getOrderNumber(), row.getTotal(), row.getPlacedAt(), new ArrayList<>()));
+            if (row.getItemId() != null) {
+                order.getItems().add(new OrderItemResponse(
+                        row.getItemId(),
+                        row.getTitle(),
+                        row.getQuantity(),
+                        row.getUnitPrice(),
+                        row.getGrandTotal()
+                ));
+            }
+        }
+
+        List<OrderHistoryResponse> page = new ArrayList<>(byOrder.values());
+        String nextCursor = null;
+        if (page.size() > pageSize) {
+            page = page.subList(0, pageSize);
+            OrderHistoryResponse last = page.get(pageSize - 1);
+            nextCursor = new OrderCursor(last.getPlacedAt(), last.getId()).encode();
+        }
+
+        return new OrderHistoryPage(page, nextCursor);
+    }
 }
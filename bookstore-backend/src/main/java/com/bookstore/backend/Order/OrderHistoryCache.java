@@ -0,0 +1,60 @@
+package com.bookstore.backend.Order;
+
+import com.bookstore.backend.Cache.TtlLruCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Rendered order history per user: the full list and first pages by size.
+ * A user's history only changes when they check out, so entries are dropped
+ * after a checkout commits and otherwise live until LRU/TTL eviction.
+ */
+@Component
+public class OrderHistoryCache {
+
+    private static final class UserHistory {
+        volatile List<OrderHistoryResponse> all;
+        final Map<Integer, OrderHistoryPage> firstPages = new ConcurrentHashMap<>();
+    }
+
+    private final TtlLruCache<Integer, UserHistory> byUser;
+
+    public OrderHistoryCache(MeterRegistry meterRegistry,
+                             @Value("${bookstore.cache.order-history.max-size:10000}") int maxSize,
+                             @Value("${bookstore.cache.order-history.ttl:30m}") Duration ttl) {
+        this.byUser = new TtlLruCache<Integer, UserHistory>(maxSize, ttl).bindTo(meterRegistry, "order-history");
+    }
+
+    public List<OrderHistoryResponse> all(int userId, Supplier<List<OrderHistoryResponse>> loader) {
+        UserHistory h = entry(userId);
+        List<OrderHistoryResponse> all = h.all;
+        if (all == null) {
+            all = loader.get();
+            h.all = all;
+        }
+        return all;
+    }
+
+    public OrderHistoryPage firstPage(int userId, int size, Supplier<OrderHistoryPage> loader) {
+        return entry(userId).firstPages.computeIfAbsent(size, s -> loader.get());
+    }
+
+    @TransactionalEventListener
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        byUser.invalidate(event.userId());
+    }
+
+    // The holder is created empty and filled lazily; an invalidation drops it,
+    // so a fill that races with a checkout lands in an unreachable holder
+    private UserHistory entry(int userId) {
+        return byUser.getOrLoad(userId, id -> new UserHistory());
+    }
+}
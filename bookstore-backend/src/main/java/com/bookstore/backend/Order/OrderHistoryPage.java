@@ -0,0 +1,16 @@
+package com.bookstore.backend.Order;
+
+import java.util.List;
+
+public class OrderHistoryPage {
+    private List<OrderHistoryResponse> orders;
+    private String nextCursor;
+
+    public OrderHistoryPage(List<OrderHistoryResponse> orders, String nextCursor) {
+        this.orders = orders;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<OrderHistoryResponse> getOrders() { return orders; }
+    public String getNextCursor() { return nextCursor; }
+}
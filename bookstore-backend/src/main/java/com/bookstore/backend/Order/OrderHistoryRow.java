@@ -0,0 +1,18 @@
+package com.bookstore.backend.Order;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// One row of the history query: an order joined with one of its items (item
+// columns are null for an order without items)
+public interface OrderHistoryRow {
+    int getOrderId();
+    String getOrderNumber();
+    BigDecimal getTotal();
+    LocalDateTime getPlacedAt();
+    Integer getItemId();
+    String getTitle();
+    Integer getQuantity();
+    BigDecimal getUnitPrice();
+    BigDecimal getGrandTotal();
+}
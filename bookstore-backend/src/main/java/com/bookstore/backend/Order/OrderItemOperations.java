@@ -0,0 +1,11 @@
+package com.bookstore.backend.Order;
+
+import java.util.List;
+
+// Custom OrderItemRepository fragment: bulk insert for checkout
+public interface OrderItemOperations {
+
+    // Inserts all items for an already-saved order in one JDBC batch.
+    // Generated ids are not read back onto the entities.
+    void insertAll(int orderId, List<OrderItem> items);
+}
@@ -0,0 +1,37 @@
+package com.bookstore.backend.Order;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * order_items keeps its IDENTITY key, which stops Hibernate from batching
+ * inserts; writing the rows through JDBC batches them anyway. With
+ * rewriteBatchedStatements on, the driver sends one multi-row INSERT.
+ */
+public class OrderItemOperationsImpl implements OrderItemOperations {
+
+    private static final String INSERT =
+            "INSERT INTO order_items (order_id, book_id, quantity, unit_price, grand_total) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbc;
+
+    public OrderItemOperationsImpl(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @Override
+    public void insertAll(int orderId, List<OrderItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        jdbc.batchUpdate(INSERT, items, items.size(), (ps, oi) -> {
+            ps.setInt(1, orderId);
+            ps.setInt(2, oi.getBook().getId());
+            ps.setInt(3, oi.getQuantity());
+            ps.setBigDecimal(4, oi.getUnitPrice());
+            ps.setBigDecimal(5, oi.getGrandTotal());
+        });
+    }
+}
@@ -2,5 +2,5 @@ package com.bookstore.backend.Order;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 
-public interface OrderItemRepository extends JpaRepository<OrderItem, Integer> {
+public interface OrderItemRepository extends JpaRepository<OrderItem, Integer>, OrderItemOperations {
 }
@@ -0,0 +1,4 @@
+package com.bookstore.backend.Order;
+
+// Published by checkout; listeners that care about commit use @TransactionalEventListener
+public record OrderPlacedEvent(int userId, int orderId) {}
@@ -1,11 +1,36 @@
 package com.bookstore.backend.Order;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface OrderRepository extends JpaRepository<Order, Integer> {
     List<Order> findByUserId(int userId);
     List<Order> findByUserIdOrderByPlacedAtDesc(int userId);
 
+    // History page in one round trip: the derived table picks `limit` orders by
+    // seeking idx_orders_user_placed_id, then their items and titles are joined on
+    String HISTORY_COLUMNS = "SELECT o.id AS orderId, o.order_number AS orderNumber, o.total AS total, " +
+            "o.placed_at AS placedAt, oi.id AS itemId, b.title AS title, oi.quantity AS quantity, " +
+            "oi.unit_price AS unitPrice, oi.grand_total AS grandTotal FROM (" +
+            "SELECT id, order_number, total, placed_at FROM orders WHERE user_id = :userId";
+
+    String HISTORY_JOINS = " ORDER BY placed_at DESC, id DESC LIMIT :limit) o " +
+            "LEFT JOIN order_items oi ON oi.order_id = o.id " +
+            "LEFT JOIN books b ON b.id = oi.book_id " +
+            "ORDER BY o.placed_at DESC, o.id DESC, oi.id";
+
+    @Query(value = HISTORY_COLUMNS + HISTORY_JOINS, nativeQuery = true)
+    List<OrderHistoryRow> historyFirstPage(@Param("userId") int userId, @Param("limit") int limit);
+
+    @Query(value = HISTORY_COLUMNS +
+            " AND (placed_at < :afterPlacedAt OR (placed_at = :afterPlacedAt AND id < :afterId))" +
+            HISTORY_JOINS, nativeQuery = true)
+    List<OrderHistoryRow> historyPageAfter(@Param("userId") int userId,
+                                           @Param("afterPlacedAt") LocalDateTime afterPlacedAt,
+                                           @Param("afterId") int afterId,
+                                           @Param("limit") int limit);
 }
@@ -0,0 +1,145 @@
+package com.bookstore.backend.Review;
+
+import com.bookstore.backend.Book.BookChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Recomputes book_ratings from the reviews table: once on the first start
+ * that finds it empty (backfill), and on bookstore.ratings.rebuild-cron
+ * (off by default) to repair drift. Book ids are cut into ranges that run
+ * in parallel, each in its own short transaction.
+ *
+ * A range locks its book_ratings rows before reading reviews, so a review
+ * committing meanwhile is either in that read or adds its +1 after the
+ * rebuilt row is written, never both. Only rows that differ are written,
+ * and only those books get a BookChangedEvent.
+ */
+@Component
+public class BookRatingRebuild {
+
+    private static final int CHUNK_BOOKS = 1_000;
+
+    private static final String STORED = "SELECT book_id, review_count, rating_sum, r1, r2, r3, r4, r5 " +
+            "FROM book_ratings WHERE book_id BETWEEN ? AND ? FOR UPDATE";
+    private static final String TOTALS = "SELECT book_id, COUNT(*), SUM(rating), SUM(rating = 1), SUM(rating = 2), " +
+            "SUM(rating = 3), SUM(rating = 4), SUM(rating = 5) FROM reviews WHERE book_id BETWEEN ? AND ? GROUP BY book_id";
+    private static final String UPSERT = "INSERT INTO book_ratings (book_id, review_count, rating_sum, r1, r2, r3, r4, r5) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE review_count = VALUES(review_count), " +
+            "rating_sum = VALUES(rating_sum), r1 = VALUES(r1), r2 = VALUES(r2), r3 = VALUES(r3), r4 = VALUES(r4), r5 = VALUES(r5)";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final ApplicationEventPublisher events;
+    private final int parallelism;
+
+    public BookRatingRebuild(JdbcTemplate jdbc,
+                             PlatformTransactionManager transactionManager,
+                             ApplicationEventPublisher events,
+                             @Value("${bookstore.ratings.rebuild-parallelism:4}") int parallelism) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.events = events;
+        this.parallelism = parallelism;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        Boolean needed = jdbc.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM reviews) AND NOT EXISTS (SELECT 1 FROM book_ratings)", Boolean.class);
+        if (Boolean.TRUE.equals(needed)) {
+            rebuild();
+        }
+    }
+
+    // Returns how many books' totals changed
+    @Scheduled(cron = "${bookstore.ratings.rebuild-cron:-}")
+    public synchronized int rebuild() {
+        Integer maxId = jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) FROM books", Integer.class);
+
+        List<Callable<Integer>> ranges = new ArrayList<>();
+        for (int from = 1; from <= maxId; from += CHUNK_BOOKS) {
+            int lo = from;
+            int hi = Math.min(maxId, from + CHUNK_BOOKS - 1);
+            ranges.add(() -> rebuildRange(lo, hi));
+        }
+
+        int changed = 0;
+        try (ExecutorService pool = Executors.newFixedThreadPool(parallelism,
+                Thread.ofPlatform().name("rating-rebuild-", 0).factory())) {
+            for (Future<Integer> f : pool.invokeAll(ranges)) {
+                changed += f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Rating rebuild interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Rating rebuild failed", e.getCause());
+        }
+        return changed;
+    }
+
+    private int rebuildRange(int from, int to) {
+        Integer changed = tx.execute(status -> {
+            Map<Integer, long[]> stored = new HashMap<>();
+            jdbc.query(STORED, rs -> {
+                stored.put(rs.getInt(1), totals(rs));
+            }, from, to);
+
+            Map<Integer, long[]> actual = new HashMap<>();
+            jdbc.query(TOTALS, rs -> {
+                actual.put(rs.getInt(1), totals(rs));
+            }, from, to);
+
+            List<Object[]> upserts = new ArrayList<>();
+            List<Integer> changedBooks = new ArrayList<>();
+            for (Map.Entry<Integer, long[]> e : actual.entrySet()) {
+                if (!Arrays.equals(e.getValue(), stored.get(e.getKey()))) {
+                    long[] t = e.getValue();
+                    upserts.add(new Object[] { e.getKey(), t[0], t[1], t[2], t[3], t[4], t[5], t[6] });
+                    changedBooks.add(e.getKey());
+                }
+            }
+            List<Object[]> deletes = new ArrayList<>();
+            for (Integer bookId : stored.keySet()) {
+                if (!actual.containsKey(bookId)) {
+                    deletes.add(new Object[] { bookId });
+                    changedBooks.add(bookId);
+                }
+            }
+
+            if (!upserts.isEmpty()) {
+                jdbc.batchUpdate(UPSERT, upserts);
+            }
+            if (!deletes.isEmpty()) {
+                jdbc.batchUpdate("DELETE FROM book_ratings WHERE book_id = ?", deletes);
+            }
+            for (Integer bookId : changedBooks) {
+                events.publishEvent(BookChangedEvent.counters(bookId));
+            }
+            return changedBooks.size();
+        });
+        return changed == null ? 0 : changed;
+    }
+
+    // review_count, rating_sum, r1..r5 from columns 2-8
+    private static long[] totals(ResultSet rs) throws SQLException {
+        long[] t = new long[7];
+        for (int i = 0; i < t.length; i++) {
+            t[i] = rs.getLong(i + 2);
+        }
+        return t;
+    }
+}
@@ -1,58 +1,64 @@
 package com.bookstore.backend.Review;
 
 import com.bookstore.backend.Book.Book;
+import com.bookstore.backend.Book.BookCache;
+import com.bookstore.backend.Book.BookChangedEvent;
+import com.bookstore.backend.Book.BookRatingRepository;
 import com.bookstore.backend.Book.BookRepository;
 import com.bookstore.backend.User.User;
 import com.bookstore.backend.User.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 @RestController
 @RequestMapping("/api/books")
 @CrossOrigin(origins = {"http://localhost:3000", "http://localhost:5173"})
 public class ReviewController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final ReviewRepository reviews;
     private final BookRepository books;
     private final UserRepository users;
+    private final BookCache bookCache;
+    private final BookRatingRepository ratings;
+    private final ApplicationEventPublisher events;
 
     public ReviewController(ReviewRepository reviews,
                             BookRepository books,
-                            UserRepository users) {
+                            UserRepository users,
+                            BookCache bookCache,
+                            BookRatingRepository ratings,
+                            ApplicationEventPublisher events) {
         this.reviews = reviews;
         this.books = books;
         this.users = users;
+        this.bookCache = bookCache;
+        this.ratings = ratings;
+        this.events = events;
     }
 
-    // GET /api/books/{bookId}/reviews
+    // GET /api/books/{bookId}/reviews?before=<id>&limit=20
+    // Newest first; pass the last id you got as before for the next page
     @GetMapping("/{bookId}/reviews")
-    public ResponseEntity<?> getReviews(@PathVariable int bookId) {
-        if (!books.existsById(bookId)) {
+    public ResponseEntity<?> getReviews(@PathVariable int bookId,
+                                        @RequestParam(required = false) Integer before,
+                                        @RequestParam(defaultValue = "20") int limit) {
+        if (!bookCache.exists(bookId)) {
             return ResponseEntity.badRequest().body("Book not found");
         }
 
-        List<ReviewResponse> response = reviews
-                .findByBookIdOrderByIdDesc(bookId)
-                .stream()
-                .map(r -> new ReviewResponse(
-                        r.getId(),
-                        // show firstName if available, otherwise email
-                        (r.getUser().getFirstName() != null && !r.getUser().getFirstName().isBlank())
-                                ? r.getUser().getFirstName()
-                                : r.getUser().getEmail(),
-                        r.getRating(),
-                        r.getBody()
-                ))
-                .collect(Collectors.toList());
-
-        return ResponseEntity.ok(response);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        int beforeId = before == null ? Integer.MAX_VALUE : before;
+        return ResponseEntity.ok(reviews.findPage(bookId, beforeId, PageRequest.of(0, pageSize)));
     }
 
     // POST /api/books/{bookId}/reviews
     @PostMapping("/{bookId}/reviews")
+    @Transactional
     public ResponseEntity<?> createReview(@PathVariable int bookId,
                                           @RequestBody ReviewRequest req) {
 
@@ -61,8 +67,10 @@ public class ReviewController {
             return ResponseEntity.badRequest().body("Rating 1-5 and comment are required");
         }
 
-        Book book = books.findById(bookId)
-                .orElseThrow(() -> new IllegalArgumentException("Book not found"));
+        if (!bookCache.exists(bookId)) {
+            throw new IllegalArgumentException("Book not found");
+        }
+        Book book = books.getReferenceById(bookId);
 
         User user = users.findById(req.getUserId())
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
@@ -75,7 +83,19 @@ public class ReviewController {
 
         reviews.save(review);
 
-        // return updated list like FinalTake style
-        return getReviews(bookId);
+        // Same transaction as the review, so the totals never count one that didn't commit
+        ratings.addRating(bookId, req.getRating());
+        events.publishEvent(BookChangedEvent.counters(bookId));   // after commit: new ETags for listings and the book
+
+        // Just the new review and the totals it moved; the client already has the rest
+        ReviewResponse created = new ReviewResponse(review.getId(), displayName(user), review.getRating(), review.getBody());
+        return ResponseEntity.ok(new ReviewCreatedResponse(created, ratings.findById(bookId).orElseThrow()));
+    }
+
+    // show firstName if available, otherwise email
+    private static String displayName(User user) {
+        return user.getFirstName() != null && !user.getFirstName().isBlank()
+                ? user.getFirstName()
+                : user.getEmail();
     }
 }
@@ -0,0 +1,33 @@
+package com.bookstore.backend.Review;
+
+import com.bookstore.backend.Book.BookRating;
+
+// POST /api/books/{bookId}/reviews: the new review and the book's totals including it
+public class ReviewCreatedResponse {
+    private ReviewResponse review;
+    private Rating rating;
+
+    public static class Rating {
+        private int reviewCount;
+        private Double averageRating;
+        private int[] ratingHistogram;
+
+        public Rating(BookRating r) {
+            this.reviewCount = r.getReviewCount();
+            this.averageRating = BookRating.average(r.getReviewCount(), r.getRatingSum());
+            this.ratingHistogram = r.getHistogram();
+        }
+
+        public int getReviewCount() { return reviewCount; }
+        public Double getAverageRating() { return averageRating; }
+        public int[] getRatingHistogram() { return ratingHistogram; }
+    }
+
+    public ReviewCreatedResponse(ReviewResponse review, BookRating rating) {
+        this.review = review;
+        this.rating = new Rating(rating);
+    }
+
+    public ReviewResponse getReview() { return review; }
+    public Rating getRating() { return rating; }
+}
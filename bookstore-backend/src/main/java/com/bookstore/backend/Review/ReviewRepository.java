@@ -1,10 +1,18 @@
 package com.bookstore.backend.Review;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
 public interface ReviewRepository extends JpaRepository<Review, Integer> {
 
-    List<Review> findByBookIdOrderByIdDesc(int bookId);
+    // Newest first, keyset on id (served by the book_id index, which ends in id), with
+    // the reviewer's first name (or email when it's blank) joined in the same query
+    @Query("SELECT new com.bookstore.backend.Review.ReviewResponse(r.id, " +
+            "CASE WHEN TRIM(u.firstName) <> '' THEN u.firstName ELSE u.email END, r.rating, r.body) " +
+            "FROM Review r JOIN r.user u WHERE r.book.id = :bookId AND r.id < :beforeId ORDER BY r.id DESC")
+    List<ReviewResponse> findPage(@Param("bookId") int bookId, @Param("beforeId") int beforeId, Pageable pageable);
 }
@@ -0,0 +1,82 @@
+package com.bookstore.backend.AI;
+
+import com.bookstore.backend.Book.Book;
+import com.bookstore.backend.Book.BookChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookTermIndexTest {
+
+    private static final int BOOKS = 1_200;
+    private static final String[] WORDS = { "alpha", "beta", "gamma", "delta", "epsilon" };
+    private static final List<String> QUERIES = List.of("alpha", "beta gamma", "delta epsilon", "gamma", "updated alpha");
+
+    @Test
+    void equalScoresGoToTheOlderBook() {
+        BookTermIndex index = new BookTermIndex(null);
+        for (int id = 1; id <= 5; id++) {
+            put(index, id, "Same Title", "Same Author", "same words");
+        }
+        put(index, 6, "Different", "Someone", "other words");
+
+        assertThat(index.topCandidates("same", 3)).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void compactionKeepsRankingsAndOrder() {
+        BookTermIndex compacted = new BookTermIndex(null);
+        for (int id = 1; id <= BOOKS; id++) {
+            put(compacted, id, title(id), author(id), description(id));
+        }
+        // Retire over half of the slots: the index compacts once live books drop below half
+        for (int id = 1; id <= BOOKS; id += 2) {
+            compacted.onBookChanged(BookChangedEvent.removed(id));
+        }
+        compacted.onBookChanged(BookChangedEvent.removed(2));
+        // Updates after compaction append new slots
+        put(compacted, 4, "Updated Alpha", "New Author", "updated alpha alpha");
+        put(compacted, 10, "Updated Beta", "New Author", "updated beta");
+
+        // The same live books, added in the order their slots now have
+        BookTermIndex fresh = new BookTermIndex(null);
+        for (int id = 6; id <= BOOKS; id += 2) {
+            if (id != 10) {
+                put(fresh, id, title(id), author(id), description(id));
+            }
+        }
+        put(fresh, 4, "Updated Alpha", "New Author", "updated alpha alpha");
+        put(fresh, 10, "Updated Beta", "New Author", "updated beta");
+
+        assertThat(compacted.size()).isEqualTo(fresh.size()).isEqualTo(BOOKS / 2 - 1);
+        for (String query : QUERIES) {
+            for (int limit : new int[] { 1, 10, 100, BOOKS }) {
+                assertThat(compacted.topCandidates(query, limit))
+                        .as("%s, limit %d", query, limit)
+                        .containsExactly(fresh.topCandidates(query, limit));
+            }
+        }
+        assertThat(compacted.topCandidates("updated", BOOKS)).containsExactlyInAnyOrder(4, 10);
+        assertThat(compacted.topCandidates("alpha", BOOKS)).doesNotContain(1, 2, 3);
+    }
+
+    private static String title(int id) {
+        return WORDS[id % WORDS.length] + " " + WORDS[id % 3];
+    }
+
+    private static String author(int id) {
+        return "Author " + WORDS[id % 2];
+    }
+
+    private static String description(int id) {
+        return (WORDS[id % 4] + " ").repeat(1 + id % 3) + WORDS[(id / 7) % WORDS.length];
+    }
+
+    private static void put(BookTermIndex index, int id, String title, String author, String description) {
+        Book book = new Book(title, author, description, BigDecimal.TEN, 1, null);
+        index.onBookChanged(new BookChangedEvent(id, book, false));
+    }
+}
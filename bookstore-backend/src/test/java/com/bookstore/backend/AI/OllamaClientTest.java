@@ -0,0 +1,103 @@
+package com.bookstore.backend.AI;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.web.client.RestClientException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OllamaClientTest {
+
+    private HttpServer server;
+    private String base;
+    private String url;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/generate", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            if (body.contains("\"stream\":true")) {
+                exchange.getResponseHeaders().add("Content-Type", "application/x-ndjson");
+                exchange.sendResponseHeaders(200, 0);   // chunked
+                try (OutputStream out = exchange.getResponseBody()) {
+                    for (String line : List.of(
+                            "{\"response\":\"1. \",\"done\":false}",
+                            "{\"response\":\"Clean \",\"done\":false}",
+                            "",
+                            "{\"response\":\"Architecture\",\"done\":false}",
+                            "{\"response\":\"\",\"done\":true}")) {
+                        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                    }
+                }
+            } else {
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                byte[] json = "{\"response\":\"whole answer\",\"done\":true}".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, json.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(json);
+                }
+            }
+        });
+        server.createContext("/broken", exchange -> {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+        url = base + "/api/generate";
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    @Test
+    void streamDeliversTokensInOrderUntilDone() {
+        OllamaClient client = client(url);
+        List<String> tokens = new ArrayList<>();
+
+        client.stream("prompt", tokens::add);
+
+        assertThat(tokens).containsExactly("1. ", "Clean ", "Architecture");
+    }
+
+    @Test
+    void generateReturnsWholeResponse() {
+        OllamaClient client = client(url);
+
+        assertThat(client.generate("prompt")).isEqualTo("whole answer");
+    }
+
+    @Test
+    void opensCircuitAfterConsecutiveFailures() {
+        OllamaClient client = client(base + "/broken");
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> client.generate("prompt")).isInstanceOf(RestClientException.class);
+        }
+
+        assertThat(client.isAvailable()).isFalse();
+        assertThatThrownBy(() -> client.generate("prompt")).isInstanceOf(LlmUnavailableException.class);
+    }
+
+    private static OllamaClient client(String url) {
+        return new OllamaClient(url, "test-model", Duration.ofSeconds(1), Duration.ofSeconds(5),
+                2, Duration.ofMillis(50), 3, Duration.ofMinutes(1), new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,71 @@
+package com.bookstore.backend.Book;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookSearchIndexTest {
+
+    private BookSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new BookSearchIndex(null);
+        add(1, "Clean Code", "Robert Martin");
+        add(2, "Clean Architecture", "Robert Martin");
+        add(3, "The Pragmatic Programmer", "Andrew Hunt");
+        add(4, "Code Complete", "Steve McConnell");
+        add(5, "Codebreakers", "Ann Other");
+        add(6, "Martin Eden", "Jack London");
+    }
+
+    @Test
+    void everyTokenIsAPrefixAndAllMustMatch() {
+        assertThat(index.search("cle", 10)).containsExactly(1, 2);
+        assertThat(index.search("clean code", 10)).containsExactly(1);
+        assertThat(index.search("cl ma", 10)).containsExactly(1, 2);
+        assertThat(index.search("clean hunt", 10)).isEmpty();
+        assertThat(index.search("zzz", 10)).isEmpty();
+    }
+
+    @Test
+    void exactTermsRankAboveTitlesAboveAuthors() {
+        // exact title term, then a longer title term, ties by id
+        assertThat(index.search("code", 10)).containsExactly(1, 4, 5);
+        // title beats author
+        assertThat(index.search("martin", 10)).containsExactly(6, 1, 2);
+        assertThat(index.search("martin", 2)).containsExactly(6, 1);
+    }
+
+    @Test
+    void shortPrefixMatchesEveryTermNotJustTheFirstFew() {
+        for (int i = 0; i < 200; i++) {
+            add(100 + i, "Thaw " + "abcdefghij".charAt(i % 10) + i, "Someone");
+            add(400 + i, "Tha" + (char) ('a' + i % 26) + (char) ('a' + i / 26) + " Stories", "Someone");
+        }
+
+        assertThat(index.search("th", 1_000)).contains(3, 100, 599);
+        assertThat(index.search("the", 10)).containsExactly(3);
+    }
+
+    @Test
+    void editsAndRemovalsAreSeen() {
+        index.onBookChanged(new BookChangedEvent(4, book("Code Incomplete", "Steve McConnell"), false));
+        assertThat(index.search("incomplete", 10)).containsExactly(4);
+        assertThat(index.search("complete", 10)).isEmpty();
+
+        index.onBookChanged(BookChangedEvent.removed(1));
+        assertThat(index.search("clean", 10)).containsExactly(2);
+    }
+
+    private void add(int id, String title, String author) {
+        index.onBookChanged(new BookChangedEvent(id, book(title, author), false));
+    }
+
+    private static Book book(String title, String author) {
+        return new Book(title, author, null, BigDecimal.TEN, 1, null);
+    }
+}
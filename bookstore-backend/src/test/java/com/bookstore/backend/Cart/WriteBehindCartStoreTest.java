@@ -0,0 +1,231 @@
+package com.bookstore.backend.Cart;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WriteBehindCartStoreTest {
+
+    private static final int USER = 5;
+    private static final int CART = 1;
+    private static final int OTHER_CART = 2;   // a different lock stripe
+
+    // cart_items as the stub database holds it: cart id -> book id -> quantity
+    private final Map<Integer, Map<Integer, Integer>> cartItems = new HashMap<>();
+    private final List<int[]> upserts = new ArrayList<>();
+    private Set<Integer> failingCarts = Set.of();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private WriteBehindCartStore store;
+
+    private final JdbcTemplate jdbc = new JdbcTemplate() {
+        @Override
+        public void query(String sql, RowCallbackHandler rch, Object... args) {
+            // load(): book_id, quantity of one cart
+            List<int[]> rows = new ArrayList<>();
+            cartItems.getOrDefault((Integer) args[0], Map.of()).forEach((book, qty) -> rows.add(new int[] { book, qty }));
+            for (int[] row : rows) {
+                try {
+                    rch.processRow(resultSet(row));
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            // The user's cart id
+            return (Integer) args[0] == USER ? List.of((T) Integer.valueOf(CART)) : List.of();
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            // checkedOut(): every line of the cart
+            cartItems.remove((Integer) args[0]);
+            return 1;
+        }
+
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                       ParameterizedPreparedStatementSetter<T> pss) {
+            List<int[]> rows = new ArrayList<>();
+            for (T arg : batchArgs) {
+                int[] row = new int[3];
+                try {
+                    pss.setValues(preparedStatement(row), arg);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+                if (failingCarts.contains(row[0])) {
+                    throw new DataAccessResourceFailureException("cart_items unavailable");
+                }
+                rows.add(row);
+            }
+            for (int[] row : rows) {
+                if (sql.startsWith("INSERT")) {
+                    cartItems.computeIfAbsent(row[0], c -> new LinkedHashMap<>()).put(row[1], row[2]);
+                    upserts.add(row);
+                } else {
+                    cartItems.getOrDefault(row[0], new HashMap<>()).remove(row[1]);
+                }
+            }
+            return new int[0][];
+        }
+    };
+
+    // Commits do nothing here; the stub applies every statement as it runs
+    private final PlatformTransactionManager transactionManager = new PlatformTransactionManager() {
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        store = new WriteBehindCartStore(jdbc, transactionManager, null, registry, 1);
+    }
+
+    @Test
+    void flushWritesOnlyTheLatestQuantityOfALine() {
+        store.add(CART, 10, 1);
+        store.add(CART, 10, 1);
+        store.set(CART, 10, 5);
+        assertThat(cartItems).isEmpty();
+
+        store.flushDirty();
+
+        assertThat(cartItems).containsEntry(CART, Map.of(10, 5));
+        assertThat(upserts).hasSize(1);
+        assertThat(dirtyCarts()).isZero();
+    }
+
+    @Test
+    void failedStripeIsRetriedWithoutHoldingUpTheOthers() {
+        store.add(CART, 10, 1);
+        store.add(OTHER_CART, 20, 2);
+        failingCarts = Set.of(CART);
+
+        store.flushDirty();
+
+        assertThat(cartItems).containsOnlyKeys(OTHER_CART);
+        assertThat(dirtyCarts()).isEqualTo(1);
+
+        failingCarts = Set.of();
+        store.flushDirty();
+
+        assertThat(cartItems).containsEntry(CART, Map.of(10, 1));
+        assertThat(dirtyCarts()).isZero();
+    }
+
+    @Test
+    void onlyCleanCartsAreEvictedAndTheyReloadFromTheDatabase() {
+        store.add(CART, 10, 1);          // least recently used, but its write fails
+        store.add(OTHER_CART, 20, 2);
+        failingCarts = Set.of(CART);
+
+        store.flushDirty();
+
+        assertThat(cachedCarts()).isEqualTo(1);   // max-carts is 1: only the clean one went
+        assertThat(store.quantity(CART, 10)).isEqualTo(1);
+
+        failingCarts = Set.of();
+        assertThat(store.quantity(OTHER_CART, 20)).isEqualTo(2);
+    }
+
+    @Test
+    void checkoutKeepsLinesEditedWhileItRuns() {
+        store.add(CART, 10, 2);
+
+        store.duringCheckout(USER, () -> {
+            assertThat(cartItems).containsEntry(CART, Map.of(10, 2));   // flushed before the order reads it
+
+            store.add(CART, 11, 1);
+            store.flushDirty();
+            assertThat(cartItems.get(CART)).doesNotContainKey(11);   // the flusher waits for the checkout
+
+            committed(() -> store.checkedOut(CART));
+            return null;
+        });
+
+        assertThat(store.quantity(CART, 10)).isZero();
+        assertThat(store.quantity(CART, 11)).isEqualTo(1);
+
+        store.flushDirty();
+        assertThat(cartItems).containsEntry(CART, Map.of(11, 1));
+    }
+
+    private int dirtyCarts() {
+        return (int) registry.get("bookstore.cart.write_behind.dirty").gauge().value();
+    }
+
+    private int cachedCarts() {
+        return (int) registry.get("bookstore.cart.write_behind.carts").gauge().value();
+    }
+
+    private static void committed(Runnable work) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            work.run();
+            for (TransactionSynchronization s : TransactionSynchronizationManager.getSynchronizations()) {
+                s.afterCommit();
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // Records setInt(i, v) into row[i - 1]
+    private static PreparedStatement preparedStatement(int[] row) {
+        return (PreparedStatement) Proxy.newProxyInstance(WriteBehindCartStoreTest.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("setInt")) {
+                        row[(Integer) args[0] - 1] = (Integer) args[1];
+                    }
+                    return null;
+                });
+    }
+
+    // getInt(i) returns row[i - 1]
+    private static ResultSet resultSet(int[] row) {
+        return (ResultSet) Proxy.newProxyInstance(WriteBehindCartStoreTest.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class }, (proxy, method, args) ->
+                        method.getName().equals("getInt") ? row[(Integer) args[0] - 1] : null);
+    }
+}
@@ -0,0 +1,164 @@
+package com.bookstore.backend.Inventory;
+
+import com.bookstore.backend.Book.Book;
+import com.bookstore.backend.Book.BookChangedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StockHoldsTest {
+
+    private static final int CART = 7;
+    private static final int BOOK = 1;
+    private static final int OTHER_BOOK = 2;
+
+    private final Map<Integer, Integer> stock = new HashMap<>();
+    private final List<Object> journal = new ArrayList<>();
+
+    private MemoryInventory inventory;
+    private StockHolds holds;
+
+    // Counts come from the stock map, journal rows are only recorded
+    private final JdbcTemplate jdbc = new JdbcTemplate() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            Integer qty = stock.get((Integer) args[0]);
+            return qty == null ? List.of() : List.of((T) qty);
+        }
+
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                       ParameterizedPreparedStatementSetter<T> pss) {
+            journal.addAll(batchArgs);
+            return new int[0][];
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        stock.put(BOOK, 5);
+        stock.put(OTHER_BOOK, 10);
+        inventory = new MemoryInventory(jdbc, null, event -> {}, 500);
+        holds = new StockHolds(inventory, Duration.ofMinutes(15));
+    }
+
+    @AfterEach
+    void tearDown() {
+        holds.shutdown();
+    }
+
+    @Test
+    void holdSetsStockAsideUntilItExpires() throws InterruptedException {
+        StockHolds shortLived = new StockHolds(inventory, Duration.ofMillis(50));
+        try {
+            assertThat(shortLived.hold(CART, BOOK, 3)).isTrue();
+            assertThat(inventory.available(BOOK)).isEqualTo(2);
+            assertThat(shortLived.hold(CART + 1, BOOK, 3)).isFalse();
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (shortLived.size() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(shortLived.size()).isZero();
+            assertThat(inventory.available(BOOK)).isEqualTo(5);
+        } finally {
+            shortLived.shutdown();
+        }
+    }
+
+    @Test
+    void checkoutSellsTheHeldStockOnCommit() {
+        holds.hold(CART, BOOK, 4);
+
+        inTransaction(TransactionSynchronization.STATUS_COMMITTED, () -> {
+            Map<Integer, Integer> remaining = holds.checkout(CART, Map.of(BOOK, 3, OTHER_BOOK, 2));
+            assertThat(remaining).containsExactly(Map.entry(OTHER_BOOK, 2));
+            assertThat(inventory.available(BOOK)).isEqualTo(1);   // surplus stays aside until commit
+        });
+
+        assertThat(holds.held(CART, BOOK)).isZero();
+        assertThat(inventory.available(BOOK)).isEqualTo(2);
+        assertThat(journal).hasSize(1);
+    }
+
+    @Test
+    void rolledBackCheckoutPutsTheHoldsBack() {
+        holds.hold(CART, BOOK, 3);
+
+        inTransaction(TransactionSynchronization.STATUS_ROLLED_BACK, () -> holds.checkout(CART, Map.of(BOOK, 3)));
+
+        assertThat(holds.held(CART, BOOK)).isEqualTo(3);
+        assertThat(inventory.available(BOOK)).isEqualTo(2);
+
+        holds.release(CART, BOOK);
+        assertThat(inventory.available(BOOK)).isEqualTo(5);
+    }
+
+    @Test
+    void rollbackKeepsANewerHoldInsteadOfTheOldOne() {
+        holds.hold(CART, BOOK, 3);
+
+        inTransaction(TransactionSynchronization.STATUS_ROLLED_BACK, () -> {
+            holds.checkout(CART, Map.of(BOOK, 3));
+            assertThat(holds.hold(CART, BOOK, 1)).isTrue();
+        });
+
+        assertThat(holds.held(CART, BOOK)).isEqualTo(1);
+        assertThat(inventory.available(BOOK)).isEqualTo(4);
+    }
+
+    @Test
+    void takeGivesStockBackOnRollback() {
+        inTransaction(TransactionSynchronization.STATUS_ROLLED_BACK, () ->
+                assertThat(inventory.take(Map.of(BOOK, 2))).isEmpty());
+        assertThat(inventory.available(BOOK)).isEqualTo(5);
+
+        inTransaction(TransactionSynchronization.STATUS_COMMITTED, () ->
+                assertThat(inventory.take(Map.of(BOOK, 2))).isEmpty());
+        assertThat(inventory.available(BOOK)).isEqualTo(3);
+
+        inTransaction(TransactionSynchronization.STATUS_COMMITTED, () ->
+                assertThat(inventory.take(Map.of(BOOK, 2, OTHER_BOOK, 11))).containsExactly(OTHER_BOOK));
+        assertThat(inventory.available(BOOK)).isEqualTo(3);
+    }
+
+    @Test
+    void bookEditKeepsHeldStockOffTheCount() {
+        holds.hold(CART, BOOK, 3);
+
+        inventory.onBookChanged(new BookChangedEvent(BOOK, new Book(), false));
+        assertThat(inventory.available(BOOK)).isEqualTo(2);
+
+        holds.release(CART, BOOK);
+        assertThat(inventory.available(BOOK)).isEqualTo(5);
+    }
+
+    // Runs work with transaction synchronization on, then completes it with status
+    private static void inTransaction(int status, Runnable work) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            work.run();
+            for (TransactionSynchronization s : TransactionSynchronizationManager.getSynchronizations()) {
+                s.afterCompletion(status);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
@@ -3,6 +3,8 @@ import { useParams, useNavigate } from "react-router-dom";
 import { useCart } from "./App.jsx";
 import "./BookDetailPage.css";
 
+const REVIEW_PAGE_SIZE = 20;
+
 export default function BookDetailPage() {
     const { id } = useParams();
     const navigate = useNavigate();
@@ -16,6 +18,7 @@ export default function BookDetailPage() {
     const [hoverRating, setHoverRating] = useState(0);
     const [reviewText, setReviewText] = useState("");
     const [reviews, setReviews] = useState([]);
+    const [hasMoreReviews, setHasMoreReviews] = useState(false);
 
     // Read logged-in user from localStorage (same idea as FinalTake)
     const currentUser = (() => {
@@ -50,26 +53,32 @@ export default function BookDetailPage() {
         }
     };
 
-    const fetchReviews = async () => {
+    const toReview = (r) => ({
+        id: r.id,
+        user: r.userDisplayName,
+        rating: r.rating,
+        comment: r.comment,
+    });
+
+    // Newest first, one page at a time; pass the oldest id shown to get the next page
+    const fetchReviews = async (before) => {
         try {
-            const response = await fetch(`http://localhost:8080/api/books/${id}/reviews`);
+            const params = new URLSearchParams({ limit: REVIEW_PAGE_SIZE });
+            if (before) params.set("before", before);
+
+            const response = await fetch(`http://localhost:8080/api/books/${id}/reviews?${params}`);
             if (!response.ok) {
-                setReviews([]);
+                if (!before) setReviews([]);
+                setHasMoreReviews(false);
                 return;
             }
 
-            const data = await response.json();
-            setReviews(
-                data.map((r) => ({
-                    id: r.id,
-                    user: r.userDisplayName,
-                    rating: r.rating,
-                    comment: r.comment,
-                }))
-            );
+            const page = (await response.json()).map(toReview);
+            setReviews((prev) => (before ? [...prev, ...page] : page));
+            setHasMoreReviews(page.length === REVIEW_PAGE_SIZE);
         } catch (err) {
             console.error("Failed to load reviews:", err);
-            setReviews([]);
+            if (!before) setReviews([]);
         }
     };
 
@@ -107,15 +116,10 @@ export default function BookDetailPage() {
                 throw new Error(msg || "Failed to submit review");
             }
 
-            const updated = await response.json();
-            setReviews(
-                updated.map((r) => ({
-                    id: r.id,
-                    user: r.userDisplayName,
-                    rating: r.rating,
-                    comment: r.comment,
-                }))
-            );
+            // Only the new review and the book's updated totals come back
+            const { review, rating } = await response.json();
+            setReviews((prev) => [toReview(review), ...prev]);
+            setBook((prev) => ({ ...prev, ...rating }));
 
             setUserRating(0);
             setReviewText("");
@@ -134,11 +138,6 @@ export default function BookDetailPage() {
         ));
     };
 
-    const averageRating =
-        reviews.length > 0
-            ? (reviews.reduce((sum, r) => sum + r.rating, 0) / reviews.length).toFixed(1)
-            : "No ratings yet";
-
     if (loading) return <div className="book-detail-page"><p>Loading...</p></div>;
     if (error) return <div className="book-detail-page"><p className="error">Error: {error}</p></div>;
     if (!book) return <div className="book-detail-page"><p>Book not found</p></div>;
@@ -167,14 +166,12 @@ export default function BookDetailPage() {
 
                     <div className="rating-summary">
                         <div className="stars-display">
-                            {reviews.length === 0
-                                ? renderStars(0)
-                                : renderStars(Math.floor(parseFloat(averageRating)))}
+                            {renderStars(Math.floor(book.averageRating ?? 0))}
                         </div>
                         <span className="rating-text">
-                            {reviews.length === 0
+                            {book.reviewCount === 0
                                 ? "No ratings yet"
-                                : `${averageRating} (${reviews.length} reviews)`}
+                                : `${book.averageRating.toFixed(1)} (${book.reviewCount} reviews)`}
                         </span>
                     </div>
 
@@ -257,6 +254,15 @@ export default function BookDetailPage() {
                             </div>
                         ))
                     )}
+                    {hasMoreReviews && (
+                        <button
+                            type="button"
+                            className="load-more-reviews-btn"
+                            onClick={() => fetchReviews(reviews[reviews.length - 1].id)}
+                        >
+                            Show more reviews
+                        </button>
+                    )}
                 </div>
             </div>
         </div>
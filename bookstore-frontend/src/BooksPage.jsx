@@ -122,7 +122,7 @@ export default function BooksPage() {
                         />
                         <h3>{book.title}</h3>
                         <p className="author">by {book.author}</p>
-                        <p className="description">{book.description}</p>
+                        {book.description && <p className="description">{book.description}</p>}
                         <div className="book-footer">
                             {/* Price is formatted to two decimal places */}
                             <span className="price">${book.price.toFixed(2)}</span> 